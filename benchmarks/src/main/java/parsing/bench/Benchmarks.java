@@ -0,0 +1,102 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import parsing.Parsing.Interpreter;
+
+// Runs the benchmarks with the JMH options given, e.g. `java -jar benchmarks.jar Lexer -p size=1MB,1GB`,
+// with the GC profiler added. Each operation goes over a whole input, so after the JMH results the
+// scores are turned into tokens/s, MB/s and bytes allocated per token of that input; for running a
+// program, into the nodes the Interpreter executes or evaluates per second (steps/s), whatever runs
+// it, so the engines compare. Benchmarks timing a single change, such as an edit, or a start of the
+// JVM keep their time per operation. Listing and help options go to JMH as they are.
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Options options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        HashMap<String, long[]> counts = new HashMap<>(); // tokens and bytes per input
+        LinkedHashMap<String, Double> programs = new LinkedHashMap<>(); // steps/s per program run
+        LinkedHashMap<String, Result<?>> latencies = new LinkedHashMap<>(); // time per operation
+        boolean header = false;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String program = result.getParams().getParam("program");
+            if (program != null) {
+                programs.put(name(benchmark) + " " + program, result.getPrimaryResult().getScore() * steps(program));
+                continue;
+            }
+            if (result.getParams().getMode() == Mode.AverageTime) {
+                String size = result.getParams().getParam("size");
+                if (size == null) size = result.getParams().getParam("launch"); // of a start
+                latencies.put(name(benchmark) + " " + (size == null ? "" : size), result.getPrimaryResult());
+                continue;
+            }
+            String size = result.getParams().getParam("size"); // none for the corpus
+            long[] count = counts.get(size);
+            if (count == null) {
+                List<Path> files = size == null ? Inputs.corpus() : List.of(Inputs.program(size));
+                count = Inputs.count(files);
+                counts.put(size, count);
+            }
+            if (!header) {
+                System.out.println();
+                System.out.printf("%-24s %8s %14s %10s %10s%n", "Benchmark", "size", "tokens/s", "MB/s", "B/token");
+                header = true;
+            }
+            double operations = result.getPrimaryResult().getScore(); // per second
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm"); // bytes per operation
+            System.out.printf("%-24s %8s %14.0f %10.2f %10s%n",
+                    name(benchmark),
+                    size == null ? "corpus" : size,
+                    operations * count[0],
+                    operations * count[1] / 1e6,
+                    allocation == null ? "-" : String.format("%.3f", allocation.getScore() / count[0]));
+        }
+        if (!programs.isEmpty()) {
+            System.out.println();
+            System.out.printf("%-33s %14s%n", "Benchmark program", "steps/s");
+            programs.forEach((name, steps) -> System.out.printf("%-33s %14.0f%n", name, steps));
+        }
+        if (!latencies.isEmpty()) {
+            System.out.println();
+            System.out.printf("%-33s %14s%n", "Benchmark", "time/op");
+            latencies.forEach((name, time) -> System.out.printf("%-33s %14s%n", name,
+                    String.format("%.1f %s", time.getScore(), time.getScoreUnit())));
+        }
+    }
+
+    // Class and method of a benchmark, without the package
+    private static String name(String benchmark) {
+        return benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+    }
+
+    // Steps of one run of a program
+    private static long steps(String program) throws IOException {
+        Inputs.Checked checked = Inputs.check(Inputs.program(program));
+        Interpreter interpreter = new Interpreter(checked.ast, checked.checker, Writer.nullWriter());
+        interpreter.run();
+        return interpreter.getSteps();
+    }
+}
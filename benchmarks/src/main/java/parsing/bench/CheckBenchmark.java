@@ -0,0 +1,57 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing;
+import parsing.Parsing.CheckCache;
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.Trace;
+
+// Parsing.check() of a generated program per operation: mapping, lexing and parsing, the way the
+// batch mode checks each file; cached() finds the tokens, tree and errors in a CheckCache in memory
+// instead, so it only maps, hashes and type checks
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CheckBenchmark {
+    @Param({"1KB", "64KB", "1MB", "16MB"})
+    public String size;
+
+    private Path program;
+    private final CheckCache cache = new CheckCache(null, Long.MAX_VALUE);
+
+    @Setup
+    public void setUp() throws IOException {
+        program = Inputs.program(size);
+        cached();
+    }
+
+    @Benchmark
+    public CheckResult check() {
+        return Parsing.check(program, Trace.OFF);
+    }
+
+    @Benchmark
+    public CheckResult cached() {
+        return Parsing.check(program, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class), cache);
+    }
+}
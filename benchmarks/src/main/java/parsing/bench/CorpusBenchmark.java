@@ -0,0 +1,46 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing;
+import parsing.Parsing.Trace;
+
+// Parsing.check() of every file of the example corpora per operation: small files, with and
+// without syntax errors
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CorpusBenchmark {
+    private List<Path> files;
+
+    @Setup
+    public void setUp() throws IOException {
+        files = Inputs.corpus();
+    }
+
+    @Benchmark
+    public int check() {
+        int passed = 0;
+        for (Path file : files) {
+            if (Parsing.check(file, Trace.OFF).passed()) passed++;
+        }
+        return passed;
+    }
+}
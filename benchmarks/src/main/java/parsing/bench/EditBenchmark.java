@@ -0,0 +1,58 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing.IncrementalParser;
+
+// Time of an edit in the middle of a generated program, as typed in an editor: edit() types a digit
+// into the number of an assignment and then deletes it, two keystrokes per operation, against parse(),
+// which lexes and parses the whole program once
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EditBenchmark {
+    @Param({"64KB", "1MB", "16MB"})
+    public String size;
+
+    private String text;
+    private IncrementalParser parser;
+    private int offset; // of the first digit of a number assigned after the middle of the program
+
+    @Setup
+    public void setUp() throws IOException {
+        text = new String(Files.readAllBytes(Inputs.program(size)), StandardCharsets.ISO_8859_1);
+        parser = new IncrementalParser(text);
+        offset = text.indexOf(":= ", text.length() / 2) + 3;
+        while (!Character.isDigit(text.charAt(offset))) offset = text.indexOf(":= ", offset) + 3;
+    }
+
+    @Benchmark
+    public boolean edit() {
+        parser.edit(offset, 0, "1");
+        parser.edit(offset, 1, "");
+        return parser.passed();
+    }
+
+    @Benchmark
+    public boolean parse() {
+        return new IncrementalParser(text).passed();
+    }
+}
@@ -0,0 +1,99 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import parsing.Parsing;
+import parsing.Parsing.Ast;
+import parsing.Parsing.LexerTokenSource;
+import parsing.Parsing.LexicalAnalyzer;
+import parsing.Parsing.TypeChecker;
+
+// Inputs of the benchmarks: programs from the programs resources and generated programs, kept in the
+// directory given by the programs.dir property (target/programs by default) so each size is generated
+// once, and the example corpora in the directories given by the corpus property.
+public final class Inputs {
+    public static final long SEED = 455;
+
+    // A parsed and type checked program
+    public static final class Checked {
+        public final Ast ast;
+        public final TypeChecker checker;
+
+        Checked(Ast ast, TypeChecker checker) {
+            this.ast = ast;
+            this.checker = checker;
+        }
+    }
+
+    private Inputs() {
+    }
+
+    // The program of the given name from the programs resources, such as primes, or else the
+    // generated program of the given size, such as 64KB
+    public static Path program(String name) throws IOException {
+        Path directory = Path.of(System.getProperty("programs.dir", "target/programs"));
+        Path file = directory.resolve("program-" + SEED + "-" + name + ".txt");
+        if (!Files.exists(file)) {
+            Files.createDirectories(directory);
+            Path partial = Files.createTempFile(directory, "program", ".tmp");
+            try (InputStream resource = Inputs.class.getResourceAsStream("/programs/" + name + ".txt")) {
+                if (resource != null) Files.copy(resource, partial, StandardCopyOption.REPLACE_EXISTING);
+                else new ProgramGenerator(SEED).write(partial, ProgramGenerator.parseSize(name));
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    // The .txt files of the example corpora, looked for in the working directory and its parent
+    public static List<Path> corpus() throws IOException {
+        ArrayList<Path> files = new ArrayList<>();
+        for (String name : System.getProperty("corpus", "examples-correct-syntax,examples-incorrect-syntax").split(",")) {
+            Path directory = Path.of(name);
+            if (!Files.isDirectory(directory) && Files.isDirectory(Path.of("..").resolve(name)))
+                directory = Path.of("..").resolve(name);
+            try (Stream<Path> list = Files.list(directory)) {
+                list.filter(file -> file.toString().endsWith(".txt")).sorted().forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    // Number of tokens (counting the end of each file) and of bytes in the given files
+    public static long[] count(List<Path> files) throws IOException {
+        long tokens = 0;
+        long bytes = 0;
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setErrorHandler((line, column, message) -> { });
+        for (Path file : files) {
+            lexer.reset();
+            lexer.fileInput(file);
+            do {
+                lexer.next();
+                tokens++;
+            } while (!lexer.isEndOfText());
+            bytes += lexer.inputSize();
+        }
+        return new long[] {tokens, bytes};
+    }
+
+    // Parse and type check a program, which must have no errors
+    public static Checked check(Path file) throws IOException {
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.fileInput(file);
+        Parsing parsing = new Parsing(new LexerTokenSource(lexer));
+        if (!parsing.parse())
+            throw new IllegalArgumentException(file + ": " + parsing.getSyntaxError());
+        TypeChecker checker = new TypeChecker(parsing.getAst());
+        if (!checker.check())
+            throw new IllegalArgumentException(file + ": " + checker.getDiagnostics().get(0));
+        return new Checked(parsing.getAst(), checker);
+    }
+}
@@ -0,0 +1,61 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing.Interpreter;
+import parsing.Parsing.Profiler;
+
+// Interpreter.run() of a checked program per operation: primes and euclid are loop heavy, the
+// generated programs run each statement a few times at most. What the program prints is thrown away.
+// profiled() runs it with a Profiler counting and sampling, as --profile does, without the report.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InterpreterBenchmark {
+    @Param({"primes", "euclid", "1MB"})
+    public String program;
+
+    private Inputs.Checked checked;
+
+    @Setup
+    public void setUp() throws IOException {
+        checked = Inputs.check(Inputs.program(program));
+    }
+
+    @Benchmark
+    public long run() throws IOException {
+        Interpreter interpreter = new Interpreter(checked.ast, checked.checker, Writer.nullWriter());
+        interpreter.run();
+        return interpreter.getSteps();
+    }
+
+    @Benchmark
+    public long profiled() throws IOException {
+        Profiler profiler = new Profiler(checked.ast, checked.checker);
+        Interpreter interpreter = new Interpreter(checked.ast, checked.checker, Writer.nullWriter(), profiler);
+        profiler.start();
+        try {
+            interpreter.run();
+        } finally {
+            profiler.stop();
+        }
+        return interpreter.getSteps();
+    }
+}
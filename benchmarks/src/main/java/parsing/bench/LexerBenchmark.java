@@ -0,0 +1,52 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing.LexicalAnalyzer;
+
+// LexicalAnalyzer.next() over a whole generated program per operation; the program is mapped once
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LexerBenchmark {
+    @Param({"1KB", "64KB", "1MB", "16MB"})
+    public String size;
+
+    private final LexicalAnalyzer lexer = new LexicalAnalyzer();
+    private ByteBuffer input;
+
+    @Setup
+    public void setUp() throws IOException {
+        lexer.fileInput(Inputs.program(size));
+        input = lexer.source();
+    }
+
+    @Benchmark
+    public int next() {
+        lexer.reset();
+        lexer.input(input);
+        int tokens = 0;
+        do {
+            lexer.next();
+            tokens++;
+        } while (!lexer.isEndOfText());
+        return tokens;
+    }
+}
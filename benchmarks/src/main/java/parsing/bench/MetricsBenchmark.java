@@ -0,0 +1,87 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing;
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.LexicalAnalyzer;
+import parsing.Parsing.Metrics;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.Trace;
+
+// What counting Metrics costs: Parsing.check() and LexicalAnalyzer.next() over a whole generated
+// program per operation, with Metrics.OFF as in CheckBenchmark and LexerBenchmark, and with a new
+// Metrics per operation
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    @Param({"64KB", "1MB"})
+    public String size;
+
+    private Path program;
+    private final LexicalAnalyzer lexer = new LexicalAnalyzer();
+    private ByteBuffer input;
+
+    @Setup
+    public void setUp() throws IOException {
+        program = Inputs.program(size);
+        lexer.fileInput(program);
+        input = lexer.source();
+    }
+
+    @Benchmark
+    public CheckResult check() {
+        return check(Metrics.OFF);
+    }
+
+    @Benchmark
+    public CheckResult checkCounted() {
+        return check(new Metrics());
+    }
+
+    @Benchmark
+    public int next() {
+        return next(Metrics.OFF);
+    }
+
+    @Benchmark
+    public int nextCounted() {
+        return next(new Metrics());
+    }
+
+    private CheckResult check(Metrics metrics) {
+        return Parsing.check(program, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class), null, metrics);
+    }
+
+    private int next(Metrics metrics) {
+        lexer.reset();
+        lexer.input(input);
+        lexer.setMetrics(metrics);
+        int tokens = 0;
+        do {
+            lexer.next();
+            tokens++;
+        } while (!lexer.isEndOfText());
+        return tokens;
+    }
+}
@@ -0,0 +1,47 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing;
+import parsing.Parsing.LexicalAnalyzer;
+import parsing.Parsing.TokenBuffer;
+
+// Parsing.parse() over the tokens of a whole generated program per operation, lexed once beforehand.
+// The tokens take about 24 bytes each, around 5 times the size of the program.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+    @Param({"1KB", "64KB", "1MB", "16MB"})
+    public String size;
+
+    private final TokenBuffer tokens = new TokenBuffer();
+
+    @Setup
+    public void setUp() throws IOException {
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.fileInput(Inputs.program(size));
+        lexer.tokenize(tokens);
+    }
+
+    @Benchmark
+    public boolean parse() {
+        return new Parsing(tokens).parse();
+    }
+}
@@ -0,0 +1,266 @@
+package parsing.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Generates valid programs of about a given size from a seed, the same program for the same seed and
+// size: declarations, nested if and while statements, deep expressions, prints and comments.
+// Programs are well typed and every variable is assigned before it is read. Every while loop counts
+// a variable of its own up to a small bound, so programs also terminate when run.
+//
+// Usage: java -cp benchmarks.jar parsing.bench.ProgramGenerator SIZE FILE [SEED], where SIZE is a
+// number of bytes with an optional KB, MB or GB suffix.
+public class ProgramGenerator {
+    private static final int MAX_DEPTH = 4; // nesting of if and while statements
+    private static final int MAX_LOOPS = 3; // nesting of while loops, each runs at most 4 times
+    private static final int MAX_EXPRESSION_DEPTH = 6;
+    private static final String[] RELATIONAL_OPERATORS = {"<", "=<", "=", "!=", ">=", ">"};
+    private static final String[] ARITHMETIC_OPERATORS = {"+", "-", "*", "+", "-"};
+
+    private final Random random;
+    // Variables in scope, innermost block last; loop counters are kept apart so nothing else assigns them
+    private final ArrayList<List<String>> ints = new ArrayList<>();
+    private final ArrayList<List<String>> bools = new ArrayList<>();
+    private int names; // for fresh variable names
+
+    public ProgramGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ProgramGenerator SIZE FILE [SEED]");
+            System.exit(2);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        new ProgramGenerator(seed).write(Path.of(args[1]), parseSize(args[0]));
+    }
+
+    // Parse a size such as 4096, 64KB, 16MB or 1GB
+    public static long parseSize(String size) {
+        String upper = size.toUpperCase();
+        long unit = 1;
+        if (upper.endsWith("KB")) unit = 1L << 10;
+        else if (upper.endsWith("MB")) unit = 1L << 20;
+        else if (upper.endsWith("GB")) unit = 1L << 30;
+        String digits = unit == 1 ? upper : upper.substring(0, upper.length() - 2);
+        return Long.parseLong(digits.trim()) * unit;
+    }
+
+    // Write a program of at least the given number of bytes (a few hundred more at most)
+    public void write(Path file, long size) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1), 1 << 16)) {
+            write(out, size);
+        }
+    }
+
+    public void write(Writer out, long size) throws IOException {
+        // The top level declares a fixed set of variables, as its declarations come before any statement
+        StringBuilder text = new StringBuilder();
+        text.append("// Generated program, ").append(size).append(" bytes\n");
+        text.append("program Generated:\n");
+        ints.add(new ArrayList<>());
+        bools.add(new ArrayList<>());
+        for (int i = 0; i < 8; i++) ints.get(0).add("n" + i);
+        for (int i = 0; i < 4; i++) bools.get(0).add("p" + i);
+        text.append("  int ").append(String.join(", ", ints.get(0))).append(";\n");
+        text.append("  bool ").append(String.join(", ", bools.get(0))).append(";\n");
+        text.append("  int i0;\n");
+        initialize(text, "  ");
+        long written = 0;
+        while (written + text.length() < size) {
+            text.append(";\n");
+            statement(text, "  ", 1, 0);
+            if (text.length() >= 1 << 16) {
+                out.append(text);
+                written += text.length();
+                text.setLength(0);
+            }
+        }
+        text.append("\n.\n");
+        out.append(text);
+        ints.clear();
+        bools.clear();
+    }
+
+    // Assign every variable of the innermost block
+    private void initialize(StringBuilder text, String indent) {
+        List<String> blockInts = ints.get(ints.size() - 1);
+        List<String> blockBools = bools.get(bools.size() - 1);
+        String separator = "";
+        for (String name : blockInts) {
+            text.append(separator).append(indent).append(name).append(" := ").append(random.nextInt(100));
+            separator = ";\n";
+        }
+        for (String name : blockBools) {
+            text.append(separator).append(indent).append(name).append(" := ").append(random.nextBoolean());
+            separator = ";\n";
+        }
+    }
+
+    // One statement, without a trailing semicolon; loops is the number of enclosing while loops
+    private void statement(StringBuilder text, String indent, int depth, int loops) {
+        int choice = random.nextInt(depth < MAX_DEPTH ? 10 : 7);
+        if (choice < 4) {
+            assignment(text, indent);
+        } else if (choice < 6) {
+            text.append(indent).append("print ");
+            if (random.nextBoolean()) intExpression(text, 0);
+            else boolExpression(text, 0);
+        } else if (choice < 7) {
+            text.append(indent).append("// just a comment\n");
+            assignment(text, indent);
+        } else if (choice < 9 || loops >= MAX_LOOPS) {
+            ifStatement(text, indent, depth, loops);
+        } else {
+            whileStatement(text, indent, depth, loops);
+        }
+    }
+
+    private void assignment(StringBuilder text, String indent) {
+        boolean toInt = random.nextInt(3) > 0;
+        text.append(indent).append(pick(toInt ? ints : bools)).append(" := ");
+        if (toInt) intExpression(text, 0);
+        else boolExpression(text, 0);
+    }
+
+    private void ifStatement(StringBuilder text, String indent, int depth, int loops) {
+        text.append(indent).append("if ");
+        boolExpression(text, 0);
+        text.append(" then\n");
+        block(text, indent + "  ", depth, loops, null);
+        if (random.nextBoolean()) {
+            text.append('\n').append(indent).append("else\n");
+            block(text, indent + "  ", depth, loops, null);
+        }
+        text.append('\n').append(indent).append("end");
+    }
+
+    // A loop counting the counter of its depth from 0 up to at most 4; the counter is declared by the
+    // block the loop is in, or at the top level for i0
+    private void whileStatement(StringBuilder text, String indent, int depth, int loops) {
+        String counter = "i" + loops;
+        text.append(indent).append(counter).append(" := 0;\n");
+        text.append(indent).append("while ").append(counter).append(" < ").append(1 + random.nextInt(4)).append(" do\n");
+        block(text, indent + "  ", depth, loops + 1, counter);
+        text.append('\n').append(indent).append("end");
+    }
+
+    // The body of an if or while: new variables, their initial values, then statements. A loop body
+    // increments its counter last.
+    private void block(StringBuilder text, String indent, int depth, int loops, String counter) {
+        ArrayList<String> blockInts = new ArrayList<>();
+        ArrayList<String> blockBools = new ArrayList<>();
+        int declared = random.nextInt(3);
+        for (int i = 0; i < declared; i++) {
+            if (random.nextBoolean()) blockInts.add("v" + names++);
+            else blockBools.add("q" + names++);
+        }
+        if (!blockInts.isEmpty()) text.append(indent).append("int ").append(String.join(", ", blockInts)).append(";\n");
+        if (!blockBools.isEmpty()) text.append(indent).append("bool ").append(String.join(", ", blockBools)).append(";\n");
+        if (loops < MAX_LOOPS) text.append(indent).append("int i").append(loops).append(";\n"); // for a nested loop
+        ints.add(blockInts);
+        bools.add(blockBools);
+
+        StringBuilder body = new StringBuilder();
+        initialize(body, indent);
+        int statements = 1 + random.nextInt(3);
+        for (int i = 0; i < statements; i++) {
+            if (body.length() > 0) body.append(";\n");
+            statement(body, indent, depth + 1, loops);
+        }
+        if (counter != null) body.append(";\n").append(indent).append(counter).append(" := ").append(counter).append(" + 1");
+        text.append(body);
+
+        ints.remove(ints.size() - 1);
+        bools.remove(bools.size() - 1);
+    }
+
+    // An int expression; deeper levels are more likely to end in a variable or number
+    private void intExpression(StringBuilder text, int depth) {
+        int choice = depth >= MAX_EXPRESSION_DEPTH ? random.nextInt(2) : random.nextInt(8);
+        switch (choice) {
+            case 0:
+                text.append(random.nextInt(1000));
+                break;
+            case 1:
+                text.append(pick(ints));
+                break;
+            case 2:
+                text.append("- ");
+                intOperand(text, depth + 1);
+                break;
+            case 3:
+                // Division and remainder only by a number other than 0
+                intOperand(text, depth + 1);
+                text.append(random.nextBoolean() ? " / " : " mod ").append(1 + random.nextInt(9));
+                break;
+            default:
+                intOperand(text, depth + 1);
+                text.append(' ').append(ARITHMETIC_OPERATORS[random.nextInt(ARITHMETIC_OPERATORS.length)]).append(' ');
+                intOperand(text, depth + 1);
+        }
+    }
+
+    // An int expression usable as an operand: composite ones are put in parentheses
+    private void intOperand(StringBuilder text, int depth) {
+        int start = text.length();
+        intExpression(text, depth);
+        if (text.indexOf(" ", start) >= 0) {
+            text.insert(start, '(').append(')');
+        }
+    }
+
+    private void boolExpression(StringBuilder text, int depth) {
+        int choice = depth >= MAX_EXPRESSION_DEPTH ? random.nextInt(2) : random.nextInt(7);
+        switch (choice) {
+            case 0:
+                text.append(random.nextBoolean());
+                break;
+            case 1:
+                text.append(pick(bools));
+                break;
+            case 2:
+                text.append("not ");
+                boolOperand(text, depth + 1);
+                break;
+            case 3:
+            case 4:
+                boolOperand(text, depth + 1);
+                text.append(random.nextBoolean() ? " and " : " or ");
+                boolOperand(text, depth + 1);
+                break;
+            default:
+                intExpression(text, depth + 1);
+                text.append(' ').append(RELATIONAL_OPERATORS[random.nextInt(RELATIONAL_OPERATORS.length)]).append(' ');
+                intExpression(text, depth + 1);
+        }
+    }
+
+    private void boolOperand(StringBuilder text, int depth) {
+        int start = text.length();
+        boolExpression(text, depth);
+        if (text.indexOf(" ", start) >= 0) {
+            text.insert(start, '(').append(')');
+        }
+    }
+
+    // A variable from any block in scope
+    private String pick(List<List<String>> scopes) {
+        int count = 0;
+        for (List<String> scope : scopes) count += scope.size();
+        int n = random.nextInt(count); // the top level always has variables
+        for (List<String> scope : scopes) {
+            if (n < scope.size()) return scope.get(n);
+            n -= scope.size();
+        }
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,97 @@
+package parsing.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.Trace;
+
+// Time to first diagnostic of a one-shot check: from starting a JVM on the first file of the example
+// corpora with an error until it prints the error, which is all JVM startup and class loading for a
+// small file; the target is under 100 ms. The JVM runs parsing.Parsing from the classes these
+// benchmarks run, as java -jar would (jar), or mapping them from an AppCDS archive of the classes a
+// check of the corpora loads (cds), made by a training run in setUp() as parser/parsing does. The
+// JVM is left to exit after each operation, untimed.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StartupBenchmark {
+    @Param({"jar", "cds"})
+    public String launch;
+
+    private final ArrayList<String> command = new ArrayList<>();
+    private Process process;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException, URISyntaxException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classPath = Path.of(Parsing.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        List<Path> corpus = Inputs.corpus();
+        Path file = null;
+        for (Path candidate : corpus) {
+            if (!Parsing.check(candidate, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class)).passed()) {
+                file = candidate;
+                break;
+            }
+        }
+        if (file == null) throw new IllegalStateException("no file with an error in the corpora");
+
+        command.add(java);
+        if (launch.equals("cds")) {
+            Path archive = Path.of(System.getProperty("programs.dir", "target/programs")).resolve("startup.jsa");
+            Files.createDirectories(archive.getParent());
+            Files.deleteIfExists(archive);
+            ArrayList<String> training = new ArrayList<>(List.of(java, "-XX:ArchiveClassesAtExit=" + archive, "-cp", classPath, "parsing.Parsing"));
+            for (Path path : corpus) training.add(path.toString());
+            new ProcessBuilder(training).redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectErrorStream(true).start().waitFor();
+            if (!Files.exists(archive)) throw new IllegalStateException("no archive made by " + training);
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-Xlog:cds=off,cds+dynamic=off");
+        }
+        command.addAll(List.of("-cp", classPath, "parsing.Parsing", file.toString()));
+    }
+
+    @Benchmark
+    public String firstDiagnostic() throws IOException {
+        process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        for (String line = output.readLine(); line != null; line = output.readLine()) {
+            if (line.startsWith("    ")) return line; // a message under the FAIL line of the file
+        }
+        throw new IllegalStateException("no diagnostic from " + command);
+    }
+
+    @TearDown(Level.Invocation)
+    public void exit() throws IOException, InterruptedException {
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        process.waitFor();
+        process.getInputStream().close();
+    }
+}
@@ -0,0 +1,47 @@
+package parsing.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsing.Parsing.Bytecode;
+import parsing.Parsing.Compiler;
+import parsing.Parsing.VirtualMachine;
+
+// VirtualMachine.run() of the same programs as InterpreterBenchmark, compiled once in the setup, so
+// the two compare directly. What the program prints is thrown away.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VmBenchmark {
+    @Param({"primes", "euclid", "1MB"})
+    public String program;
+
+    private Bytecode bytecode;
+
+    @Setup
+    public void setUp() throws IOException {
+        Inputs.Checked checked = Inputs.check(Inputs.program(program));
+        bytecode = Compiler.compile(checked.ast, checked.checker, new byte[0]);
+    }
+
+    @Benchmark
+    public void run() throws IOException {
+        new VirtualMachine().run(bytecode, Writer.nullWriter());
+    }
+}
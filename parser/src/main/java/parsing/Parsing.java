@@ -0,0 +1,6761 @@
+package parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import jdk.jfr.Category;
+import jdk.net.ExtendedSocketOptions;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+public class Parsing {
+
+    // Kinds of tokens, with the spelling used for them in messages
+    public enum TokenKind {
+        PROGRAM("program"), IF("if"), THEN("then"), ELSE("else"), WHILE("while"), DO("do"),
+        PRINT("print"), NOT("not"), OR("or"), AND("and"), BOOL("bool"), INT("int"),
+        END("end"), MOD("mod"), BOOLEAN_LITERAL("BooleanLiteral"), ID("ID"), NUM("NUM"),
+        COLON(":"), ASSIGN(":="), EQUAL("="), LESS_EQUAL("=<"), LESS("<"), NOT_EQUAL("!="),
+        GREATER_EQUAL(">="), GREATER(">"), PLUS("+"), MINUS("-"), TIMES("*"), DIVIDE("/"),
+        SEMICOLON(";"), RIGHT_PAREN(")"), LEFT_PAREN("("), PERIOD("."), COMMA(","),
+        END_OF_FILE("end-of-file");
+
+        private static final TokenKind[] VALUES = values(); // cached, values() copies the array on every call
+        private final String text;
+
+        TokenKind(String text) {
+            this.text = text;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        // Look up a kind by its ordinal, as stored in a TokenBuffer
+        public static TokenKind of(int ordinal) {
+            return VALUES[ordinal];
+        }
+
+        // This kind as a bit in a set of kinds held in a long (there are fewer than 64 kinds)
+        public long bit() {
+            return 1L << ordinal();
+        }
+
+        // Set of the given kinds, as a long
+        public static long set(TokenKind... kinds) {
+            long set = 0;
+            for (TokenKind kind : kinds) set |= kind.bit();
+            return set;
+        }
+    }
+
+    // Inner class representing a token, only built when a token is needed for a message
+    public static class Token {
+        private TokenKind kind;
+        private String value;
+        private String position;
+
+        public Token(TokenKind kind, String value, String position) {
+            this.kind = kind;
+            this.value = value;
+            this.position = position;
+        }
+
+        // Getters
+        public String getKind() {
+            return kind.text();
+        }
+
+        public TokenKind getTokenKind() {
+            return kind;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getPosition() {
+            return position;
+        }
+    }
+
+    // Inner class for trace output: tokens as they are read, tokens as they are matched and errors as
+    // they are found, each enabled by a level. Tracing is off by default. The lines go to a Sink; with
+    // AsyncSink they are batched and written by a background thread, so lexing and parsing never wait
+    // for the console.
+    public static class Trace {
+        // Levels of detail, each including the ones before it
+        public enum Level { OFF, ERRORS, TOKENS, PARSE }
+
+        // Interface for where trace lines go
+        public interface Sink {
+            void line(String line);
+
+            // Wait until the lines so far are written
+            default void flush() {
+            }
+        }
+
+        public static final Trace OFF = new Trace(Level.OFF, line -> { });
+
+        // What is traced, as final fields so checking a disabled level costs a field read
+        final boolean errors; // lexical and syntax errors as they are found
+        final boolean tokens; // each token the lexer reads
+        final boolean parse; // each token the parser matches
+        private final Sink sink;
+
+        public Trace(Level level, Sink sink) {
+            this.errors = level.compareTo(Level.ERRORS) >= 0;
+            this.tokens = level.compareTo(Level.TOKENS) >= 0;
+            this.parse = level.compareTo(Level.PARSE) >= 0;
+            this.sink = sink;
+        }
+
+        public void line(String line) {
+            sink.line(line);
+        }
+
+        public void flush() {
+            sink.flush();
+        }
+
+        // Sink appending lines to a batch in memory; full batches are queued for a background thread
+        // that writes them out. Callers only wait if that thread falls a whole queue of batches behind.
+        public static class AsyncSink implements Sink, AutoCloseable {
+            private static final int BATCH_SIZE = 64 * 1024; // chars per batch
+            private static final StringBuilder END = new StringBuilder(); // queued by close()
+
+            private final BlockingQueue<StringBuilder> batches = new ArrayBlockingQueue<>(16);
+            private final Writer out;
+            private final Thread writer;
+            private StringBuilder batch = new StringBuilder(BATCH_SIZE);
+            private long queued; // batches queued, guarded by this
+            private long written; // batches written or dropped, guarded by progress
+            private final Object progress = new Object();
+
+            public AsyncSink(OutputStream stream) {
+                out = new OutputStreamWriter(stream);
+                writer = new Thread(this::write, "trace-writer");
+                writer.setDaemon(true);
+                writer.start();
+            }
+
+            // Synchronized, as the lexer and parser may run on different threads
+            public synchronized void line(String line) {
+                batch.append(line).append('\n');
+                if (batch.length() >= BATCH_SIZE) {
+                    queue(batch);
+                    batch = new StringBuilder(BATCH_SIZE);
+                }
+            }
+
+            public void flush() {
+                long target;
+                synchronized (this) {
+                    if (batch.length() > 0) {
+                        queue(batch);
+                        batch = new StringBuilder(BATCH_SIZE);
+                    }
+                    target = queued;
+                }
+                synchronized (progress) {
+                    try {
+                        while (written < target) progress.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            // Write out everything traced so far and stop the writer thread
+            public void close() {
+                flush();
+                synchronized (this) {
+                    queue(END);
+                }
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            private void queue(StringBuilder full) {
+                try {
+                    batches.put(full);
+                    queued++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // the batch is dropped
+                }
+            }
+
+            // Writer thread: write batches as they come
+            private void write() {
+                boolean failed = false; // after a write error, batches are still taken so callers never block
+                try {
+                    for (StringBuilder next = batches.take(); next != END; next = batches.take()) {
+                        if (!failed) {
+                            try {
+                                out.append(next).flush();
+                            } catch (IOException e) {
+                                failed = true;
+                            }
+                        }
+                        synchronized (progress) {
+                            written++;
+                            progress.notifyAll();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // nothing more can be written
+                }
+            }
+        }
+    }
+
+    // Inner class counting what checking a file does, phase by phase: the wall time of each phase, the
+    // bytes, tokens and nodes gone over, tokens per kind, the deepest nesting the parser reached and
+    // the errors each phase found. Off by default (Metrics.OFF), where counting costs a field read.
+    // Lexing and parsing take turns token by token, so the time of lexing is estimated from one
+    // LexicalAnalyzer.next() call in SAMPLE, and parsing gets the rest. With a Flight Recorder
+    // recording, each phase is also a PhaseEvent. A Metrics counts one file on one thread; a Registry
+    // adds them up, and writes the totals out as JSON.
+    public static class Metrics {
+        public enum Phase { LEX, PARSE, CHECK, OPTIMIZE, RUN }
+
+        private static final Phase[] PHASES = Phase.values();
+        private static final TokenKind[] KINDS = TokenKind.values();
+        private static final int SAMPLE = 64; // calls to next() per timed call, a power of two
+        private static final long CLOCK = clock(); // nanos taken by System.nanoTime(), left out of timed calls
+        public static final Metrics OFF = new Metrics(false); // after PHASES and KINDS, which it needs
+
+        final boolean enabled; // final, so checking costs a field read
+        private final long[] nanos = new long[PHASES.length];
+        private final long[] errors = new long[PHASES.length];
+        private final long[] kinds = new long[KINDS.length]; // tokens of each kind
+        private long tokens;
+        private long sampledNanos; // of the timed calls to next()
+        private long sampledTokens;
+        private long bytes; // lexed
+        private long nodes;
+        private long files;
+        private long cached; // files found in a CheckCache
+        private int maxBodyDepth; // if and while statements inside one another
+        private int maxExpressionDepth; // parentheses and mod operands inside one another
+        private long started; // of the phase being timed
+        private PhaseEvent event; // of the phase being timed, null without a recording
+
+        public Metrics() {
+            this(true);
+        }
+
+        private Metrics(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        // Whether a Flight Recorder recording takes PhaseEvents, which need Metrics. The Flight
+        // Recorder is only asked once it is running: making an event starts up its type library,
+        // which takes longer than checking a small file
+        public static boolean recording() {
+            return FlightRecorder.isInitialized() && new PhaseEvent().isEnabled();
+        }
+
+        // The least time between two calls to System.nanoTime(), over a few tries
+        private static long clock() {
+            long least = Long.MAX_VALUE;
+            for (int i = 0; i < 1000; i++) {
+                long start = System.nanoTime();
+                least = Math.min(least, System.nanoTime() - start);
+            }
+            return least;
+        }
+
+        // Whether the next call to next() is timed
+        boolean sample() {
+            return (tokens & (SAMPLE - 1)) == 0;
+        }
+
+        // A token read by next(), which took the given time if it was timed, else -1
+        void token(TokenKind kind, long nanos) {
+            tokens++;
+            kinds[kind.ordinal()]++;
+            if (nanos >= 0) {
+                sampledNanos += Math.max(0, nanos - CLOCK);
+                sampledTokens++;
+            }
+        }
+
+        // Start timing a phase of checking a file
+        void start() {
+            if (!enabled) return;
+            if (FlightRecorder.isInitialized()) {
+                event = new PhaseEvent();
+                event.begin();
+            }
+            started = System.nanoTime();
+        }
+
+        // End timing the parse of a file of the given bytes: lexing it and parsing it, with its
+        // lexical and syntax errors
+        void parsed(Path file, long bytes, Parsing parsing, int lexicalErrors) {
+            if (!enabled) return;
+            long wall = System.nanoTime() - started;
+            long lexing = sampledTokens == 0 ? 0 : Math.min(wall, sampledNanos * tokens / sampledTokens);
+            nanos[Phase.LEX.ordinal()] += lexing;
+            nanos[Phase.PARSE.ordinal()] += wall - lexing;
+            errors[Phase.LEX.ordinal()] += lexicalErrors;
+            errors[Phase.PARSE.ordinal()] += parsing.getDiagnostics().size();
+            this.bytes += bytes;
+            nodes += parsing.getAst().size();
+            files++;
+            maxBodyDepth = Math.max(maxBodyDepth, parsing.getMaxBodyDepth());
+            maxExpressionDepth = Math.max(maxExpressionDepth, parsing.getMaxExpressionDepth());
+            if (event != null) event.lexing = lexing;
+            commit(Phase.PARSE, file, bytes, tokens, parsing.getAst().size(), lexicalErrors + parsing.getDiagnostics().size());
+        }
+
+        // A file found in a CheckCache, neither lexed nor parsed
+        void cached() {
+            if (!enabled) return;
+            files++;
+            cached++;
+        }
+
+        // End timing a phase after lexing and parsing, over the given nodes and with the given errors
+        void end(Phase phase, Path file, long nodes, int errors) {
+            if (!enabled) return;
+            nanos[phase.ordinal()] += System.nanoTime() - started;
+            this.errors[phase.ordinal()] += errors;
+            commit(phase, file, 0, 0, nodes, errors);
+        }
+
+        private void commit(Phase phase, Path file, long bytes, long tokens, long nodes, int errors) {
+            if (event == null) return;
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = file.toString();
+                event.phase = phase.name().toLowerCase();
+                event.bytes = bytes;
+                event.tokens = tokens;
+                event.nodes = nodes;
+                event.errors = errors;
+                event.commit();
+            }
+            event = null;
+        }
+
+        // Flight Recorder event for a phase of checking a file. Lexing and parsing are one event, as
+        // they take turns, with the estimated time of lexing in it.
+        @Name("parsing.Phase")
+        @Label("Checking Phase")
+        @Category("Parsing")
+        @StackTrace(false)
+        static class PhaseEvent extends Event {
+            @Label("File")
+            String file;
+            @Label("Phase")
+            String phase; // lex and parse together are parse
+            @Label("Bytes")
+            @DataAmount
+            long bytes;
+            @Label("Tokens")
+            long tokens;
+            @Label("Nodes")
+            long nodes;
+            @Label("Errors")
+            int errors;
+            @Label("Lexing")
+            @Timespan
+            long lexing; // of a parse, estimated
+        }
+
+        // Inner class adding up the Metrics of many files, from any thread
+        public static class Registry {
+            private final Metrics total = new Metrics();
+
+            public synchronized void add(Metrics metrics) {
+                for (int i = 0; i < PHASES.length; i++) {
+                    total.nanos[i] += metrics.nanos[i];
+                    total.errors[i] += metrics.errors[i];
+                }
+                for (int i = 0; i < KINDS.length; i++) total.kinds[i] += metrics.kinds[i];
+                total.tokens += metrics.tokens;
+                total.bytes += metrics.bytes;
+                total.nodes += metrics.nodes;
+                total.files += metrics.files;
+                total.cached += metrics.cached;
+                total.maxBodyDepth = Math.max(total.maxBodyDepth, metrics.maxBodyDepth);
+                total.maxExpressionDepth = Math.max(total.maxExpressionDepth, metrics.maxExpressionDepth);
+            }
+
+            // The totals as a JSON object: files, those found in a cache, then the bytes, tokens and
+            // nodes of the others; per phase its seconds, errors, and for lexing and parsing bytes and
+            // tokens per second; tokens per kind; and the deepest nesting
+            public synchronized String toJson() {
+                StringBuilder json = new StringBuilder();
+                json.append("{\n  \"files\": ").append(total.files);
+                json.append(",\n  \"cached\": ").append(total.cached);
+                json.append(",\n  \"bytes\": ").append(total.bytes);
+                json.append(",\n  \"tokens\": ").append(total.tokens);
+                json.append(",\n  \"nodes\": ").append(total.nodes);
+                json.append(",\n  \"phases\": {");
+                for (Phase phase : PHASES) {
+                    double seconds = total.nanos[phase.ordinal()] / 1e9;
+                    json.append(phase.ordinal() == 0 ? "\n" : ",\n").append("    \"").append(phase.name().toLowerCase()).append("\": {");
+                    json.append("\"seconds\": ").append(String.format(Locale.ROOT, "%.6f", seconds));
+                    json.append(", \"errors\": ").append(total.errors[phase.ordinal()]);
+                    if ((phase == Phase.LEX || phase == Phase.PARSE) && seconds > 0) {
+                        json.append(String.format(Locale.ROOT, ", \"bytesPerSecond\": %.0f", total.bytes / seconds));
+                        json.append(String.format(Locale.ROOT, ", \"tokensPerSecond\": %.0f", total.tokens / seconds));
+                    }
+                    json.append('}');
+                }
+                json.append("\n  },\n  \"tokensByKind\": {");
+                String separator = "\n";
+                for (TokenKind kind : KINDS) {
+                    if (total.kinds[kind.ordinal()] == 0) continue;
+                    json.append(separator).append("    \"").append(kind.name()).append("\": ").append(total.kinds[kind.ordinal()]);
+                    separator = ",\n";
+                }
+                json.append("\n  },\n  \"maxBodyDepth\": ").append(total.maxBodyDepth);
+                json.append(",\n  \"maxExpressionDepth\": ").append(total.maxExpressionDepth);
+                json.append("\n}\n");
+                return json.toString();
+            }
+
+            public void write(Path file) throws IOException {
+                Files.writeString(file, toJson());
+            }
+        }
+    }
+
+    // Inner class giving the line and line character of an offset in a source, for messages. Tokens
+    // and nodes keep only their offset; the offsets where lines start are found in one pass over the
+    // source the first time a position is asked for, then looked up by binary search. Lines and line
+    // characters count from 1, and a new line character is the last character of its line.
+    public static class LineIndex {
+        private final ByteBuffer[] sources; // the source, in pieces following one another
+        private volatile long[] starts; // offset of the first character of each line, once found
+
+        public LineIndex(ByteBuffer... sources) {
+            this.sources = sources;
+        }
+
+        public int line(long offset) {
+            return line(starts(), offset) + 1;
+        }
+
+        public int column(long offset) {
+            long[] starts = starts();
+            return (int) (offset - starts[line(starts, offset)]) + 1;
+        }
+
+        // line:column, as messages show positions
+        public String position(long offset) {
+            long[] starts = starts();
+            int line = line(starts, offset);
+            return (line + 1) + ":" + (offset - starts[line] + 1);
+        }
+
+        // Index of the last line starting at or before offset
+        private static int line(long[] starts, long offset) {
+            int low = 0;
+            int high = starts.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (starts[middle] <= offset) low = middle;
+                else high = middle - 1;
+            }
+            return low;
+        }
+
+        private long[] starts() {
+            long[] starts = this.starts;
+            if (starts == null) {
+                synchronized (this) {
+                    if (this.starts == null) this.starts = find();
+                    starts = this.starts;
+                }
+            }
+            return starts;
+        }
+
+        // 0, then the offset after each new line, reading the source a block at a time
+        private long[] find() {
+            long[] starts = new long[64];
+            int lines = 1;
+            long base = 0;
+            byte[] block = new byte[8192];
+            for (ByteBuffer source : sources) {
+                if (source == null) continue;
+                int limit = source.limit();
+                for (int from = 0; from < limit; from += block.length) {
+                    int n = Math.min(block.length, limit - from);
+                    source.get(from, block, 0, n);
+                    for (int i = 0; i < n; i++) {
+                        if (block[i] != '\n') continue;
+                        if (lines == starts.length) starts = Arrays.copyOf(starts, lines * 2);
+                        starts[lines++] = base + from + i + 1;
+                    }
+                }
+                base += limit;
+            }
+            return Arrays.copyOf(starts, lines);
+        }
+    }
+
+    // Inner class holding a whole token stream as parallel arrays instead of one object per token
+    public static class TokenBuffer {
+        private int[] kinds = new int[256]; // TokenKind ordinal of each token
+        private int[] starts = new int[256]; // offset of each token's first character in the source
+        private int[] ends = new int[256]; // offset just past each token's last character
+        private int[] numbers = new int[256]; // value of NUM tokens, 1 or 0 for BooleanLiteral tokens
+        private ByteBuffer source; // the bytes the tokens were read from
+        private long base; // offset in the file of the first byte of source
+        private LineIndex lines; // of the file, made from source when first asked for
+        private int size; // number of tokens
+
+        // Append a token covering source[start, end)
+        public void add(TokenKind kind, int start, int end, int number) {
+            if (size == kinds.length) grow();
+            kinds[size] = kind.ordinal();
+            starts[size] = start;
+            ends[size] = end;
+            numbers[size] = number;
+            size++;
+        }
+
+        // Double the capacity of the token arrays
+        private void grow() {
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+        }
+
+        public void setSource(ByteBuffer source) {
+            this.source = source;
+            lines = null;
+        }
+
+        // The same tokens with their text read from source, sharing the token arrays; for reading only
+        public TokenBuffer withSource(ByteBuffer source) {
+            TokenBuffer view = new TokenBuffer();
+            view.kinds = kinds;
+            view.starts = starts;
+            view.ends = ends;
+            view.numbers = numbers;
+            view.size = size;
+            view.base = base;
+            view.source = source;
+            return view;
+        }
+
+        // Set where source starts in the file, when it holds only part of it
+        public void setBase(long base) {
+            this.base = base;
+        }
+
+        // Lines of the whole file, when source holds only part of it
+        public void setLines(LineIndex lines) {
+            this.lines = lines;
+        }
+
+        public LineIndex lines() {
+            if (lines == null) lines = new LineIndex(source);
+            return lines;
+        }
+
+        // Offsets of token i in the file
+        public long start(int i) {
+            return base + starts[i];
+        }
+
+        public long end(int i) {
+            return base + ends[i];
+        }
+
+        // Move tokens from index from on by the given bytes, for tokens after an edit
+        public void shift(int from, int offsets) {
+            for (int i = from; i < size; i++) {
+                starts[i] += offsets;
+                ends[i] += offsets;
+            }
+        }
+
+        // Replace tokens [from, to) by all the tokens of with
+        public void replace(int from, int to, TokenBuffer with) {
+            int count = with.size;
+            int newSize = size - (to - from) + count;
+            while (newSize > kinds.length) grow();
+            int after = size - to;
+            System.arraycopy(kinds, to, kinds, from + count, after);
+            System.arraycopy(starts, to, starts, from + count, after);
+            System.arraycopy(ends, to, ends, from + count, after);
+            System.arraycopy(numbers, to, numbers, from + count, after);
+            System.arraycopy(with.kinds, 0, kinds, from, count);
+            System.arraycopy(with.starts, 0, starts, from, count);
+            System.arraycopy(with.ends, 0, ends, from, count);
+            System.arraycopy(with.numbers, 0, numbers, from, count);
+            size = newSize;
+        }
+
+        // Drop the last token
+        public void removeLast() {
+            if (size > 0) size--;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public TokenKind kind(int i) {
+            return TokenKind.of(kinds[i]);
+        }
+
+        // Text of an ID, NUM or BooleanLiteral token, made into a String only when asked for
+        public String value(int i) {
+            TokenKind kind = kind(i);
+            if (kind != TokenKind.ID && kind != TokenKind.NUM && kind != TokenKind.BOOLEAN_LITERAL) return "";
+            return LexicalAnalyzer.text(source, starts[i], ends[i]);
+        }
+
+        public int numValue(int i) {
+            return numbers[i];
+        }
+
+        // Id of the text of token i in names
+        public int name(int i, Names names) {
+            return names.intern(source, starts[i], ends[i]);
+        }
+
+        public int line(int i) {
+            return lines().line(start(i));
+        }
+
+        public int column(int i) {
+            return lines().column(start(i));
+        }
+
+        public String position(int i) {
+            return lines().position(start(i));
+        }
+
+        // Build a Token object for token i (for messages only)
+        public Token token(int i) {
+            return new Token(kind(i), value(i), position(i));
+        }
+
+        public void clear() {
+            size = 0;
+            source = null;
+            base = 0;
+            lines = null;
+        }
+    }
+
+    // Inner class interning names: each distinct name gets an id, counting from 0, so later passes can
+    // keep what they know about a name in arrays indexed by id. Names are looked up straight from the
+    // source bytes with an open-addressing hash table; a String is only made when one is asked for.
+    public static class Names {
+        private int[] table = new int[64]; // id + 1 of the name in each slot, 0 for an empty slot
+        private int[] hashes = new int[16]; // hash of each name
+        private int[] offsets = new int[17]; // name i is bytes[offsets[i], offsets[i + 1])
+        private byte[] bytes = new byte[256];
+        private String[] strings = new String[16]; // made when first asked for
+        private int size; // number of names
+
+        // Id of source[start, end), added if it is new
+        public int intern(ByteBuffer source, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) hash = 31 * hash + source.get(i);
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    table[slot] = add(source, start, end, hash) + 1;
+                    if (size * 2 > table.length) rehash();
+                    return size - 1;
+                }
+                if (hashes[id] == hash && equals(id, source, start, end)) return id;
+            }
+        }
+
+        // Id of the given name, added if it is new
+        public int intern(String name) {
+            return intern(ByteBuffer.wrap(name.getBytes(StandardCharsets.ISO_8859_1)), 0, name.length());
+        }
+
+        public String name(int id) {
+            if (strings[id] == null)
+                strings[id] = new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.ISO_8859_1);
+            return strings[id];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Spread the hash over the low bits used for the slot
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private boolean equals(int id, ByteBuffer source, int start, int end) {
+            int offset = offsets[id];
+            if (offsets[id + 1] - offset != end - start) return false;
+            for (int i = start; i < end; i++) {
+                if (bytes[offset++] != source.get(i)) return false;
+            }
+            return true;
+        }
+
+        private int add(ByteBuffer source, int start, int end, int hash) {
+            if (size + 1 == offsets.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+                strings = Arrays.copyOf(strings, size * 2);
+            }
+            int offset = offsets[size];
+            if (offset + end - start > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, offset + end - start));
+            for (int i = start; i < end; i++) bytes[offset++] = source.get(i);
+            hashes[size] = hash;
+            offsets[size + 1] = offset;
+            return size++;
+        }
+
+        // Double the table, keeping it at most half full
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = mix(hashes[id]) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = id + 1;
+            }
+        }
+    }
+
+    // Inner class representing a lexical analyzer
+    public static class LexicalAnalyzer {
+        private char c; // current character
+        private ByteBuffer source; // input bytes, lexed in place (mapped from the file when possible)
+        private int limit; // number of bytes in source
+        private int offset; // offset of the byte after the current character
+        private int tokenStart; // offset of the first character of the current token
+        private int tokenLength; // number of characters in the current token
+        private int number; // value of the current token, if it is a NUM
+        private LineIndex lines = new LineIndex(); // of source, for the position of a token in a message
+        private TokenKind kind; // type of current token
+        private boolean comment = false; // keeps track if currently reading a comment
+        private boolean exit = false; // checks if we should exit the lexical analyzer or not
+        private Trace trace = Trace.OFF; // what to trace, see Trace
+        private Metrics metrics = Metrics.OFF; // what to count, see Metrics
+        private ErrorHandler errorHandler = PRINT_ERRORS; // where lexical errors go
+
+        // Interface for receiving lexical errors
+        public interface ErrorHandler {
+            void error(int line, int column, String message);
+        }
+
+        // Default error handler, see printError()
+        static final ErrorHandler PRINT_ERRORS = LexicalAnalyzer::printError;
+
+        // Character classes, as bit flags in CHAR_CLASS
+        private static final byte LETTER = 1, DIGIT = 2, SYMBOL = 4, SPACE = 8, UNDERSCORE = 16;
+        private static final byte[] CHAR_CLASS = new byte[128]; // class of every ASCII character, 0 if not allowed
+        private static final TokenKind[] SYMBOL_KINDS = new TokenKind[128]; // kind of each one-character symbol
+
+        // Keywords in a collision-free hash table, see keywordHash()
+        private static final String[] keywords = {"program", "if", "then", "else", "while", "do", "print", "not", "or", "and", "false", "true", "bool", "int", "end", "mod"};
+        private static final byte[][] KEYWORD_TABLE = new byte[32][];
+        private static final TokenKind[] KEYWORD_TABLE_KINDS = new TokenKind[32];
+
+        static {
+            for (char ch = 'a'; ch <= 'z'; ch++) CHAR_CLASS[ch] = LETTER;
+            for (char ch = 'A'; ch <= 'Z'; ch++) CHAR_CLASS[ch] = LETTER;
+            for (char ch = '0'; ch <= '9'; ch++) CHAR_CLASS[ch] = DIGIT;
+            for (char ch : ":=<>!+-*/;)(.,".toCharArray()) CHAR_CLASS[ch] = SYMBOL;
+            for (char ch = 0; ch < 128; ch++)
+                if (Character.isWhitespace(ch)) CHAR_CLASS[ch] = SPACE;
+            CHAR_CLASS['_'] = UNDERSCORE;
+
+            for (TokenKind k : TokenKind.values()) {
+                if (k.ordinal() >= TokenKind.COLON.ordinal() && k.text().length() == 1)
+                    SYMBOL_KINDS[k.text().charAt(0)] = k;
+            }
+
+            for (String keyword : keywords) {
+                int h = keywordHash(keyword.charAt(0), keyword.charAt(keyword.length() - 1), keyword.length());
+                if (KEYWORD_TABLE[h] != null) // only happens if the keyword list changes, pick a new hash then
+                    throw new IllegalStateException("keywords '" + keyword + "' collide with another keyword");
+                KEYWORD_TABLE[h] = keyword.getBytes(StandardCharsets.ISO_8859_1);
+                KEYWORD_TABLE_KINDS[h] = keyword.equals("true") || keyword.equals("false")
+                        ? TokenKind.BOOLEAN_LITERAL : TokenKind.valueOf(keyword.toUpperCase());
+            }
+        }
+
+        // Hash of a word from its first char, last char and length; has no collisions between the keywords
+        private static int keywordHash(char first, char last, int length) {
+            return (first + last + length) & 31;
+        }
+
+        // Class flags of a character (non-ASCII characters are never allowed, but may be white space)
+        private static int charClass(char ch) {
+            if (ch < 128) return CHAR_CLASS[ch];
+            return Character.isWhitespace(ch) ? SPACE : 0;
+        }
+
+        // Constructor
+        public LexicalAnalyzer() {
+        }
+
+        // Set file input for lexical analyzer; the file is mapped into memory rather than read
+        public void fileInput(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE)
+                    throw new IOException(path + " is too large (" + size + " bytes)");
+                input(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)); // the mapping stays valid after the channel is closed
+            }
+        }
+
+        // Set file input for lexical analyzer from a reader; its text is read in full first
+        public void fileInput(FileReader input) {
+            StringBuilder text = new StringBuilder();
+            char[] chunk = new char[8192];
+            try {
+                int n;
+                while ((n = input.read(chunk)) != -1)
+                    text.append(chunk, 0, n);
+            } catch (IOException e) {
+                System.out.println(position() + "\t>>>>>>IO Exception");
+                exit = true; // set exit to true, for exiting program
+            }
+            input(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.ISO_8859_1))); // anything beyond Latin-1 is illegal anyway
+        }
+
+        // Set the input to bytes 0 to limit() of the given buffer
+        public void input(ByteBuffer bytes) {
+            source = bytes;
+            limit = bytes.limit();
+            offset = 0;
+            lines = new LineIndex(bytes);
+            readNextChar(); // read first char to prepare for first next() call
+        }
+
+        // Read next character
+        private void readNextChar() {
+            c = offset < limit ? (char) (source.get(offset) & 0xff) : (char) -1; // -1 at the end of the input
+            offset++;
+        }
+
+        // Process the next token
+        public void next() {
+            //Call next from LA
+            // if isComment()
+            // next()
+            //if LA.shouldEnd()
+            //exit
+            long start = metrics.enabled && metrics.sample() ? System.nanoTime() : -1;
+            do {
+                if (comment) eatComment(); // if currently reading a comment, eat until end of comment
+                eatWhiteSpace(); // eat white spaces
+                tokenStart = offset - 1; // register where the token starts in the source
+                identifyType(); // identify which token we're looking at
+            } while (comment || kind == null); // skip comments and illegal characters, then read the token after them
+            tokenLength = offset - 1 - tokenStart; // the token ends just before the current character
+            if (trace.tokens)
+                trace.line("Position: " + position() + ", Token Kind: " + kind() + ", Value: " + stringValue());
+            if (metrics.enabled)
+                metrics.token(kind, start < 0 ? -1 : System.nanoTime() - start);
+        }
+
+        // Identify the type of the current token
+        private void identifyType() {
+            if (c == (char) (-1)) { // if -1, we've reached end of file
+                kind = TokenKind.END_OF_FILE;
+            } else {
+                switch (charClass(c)) {
+                    case LETTER: // if it is a letter, read word (for ID or keywords)
+                        readWord();
+                        break;
+                    case DIGIT: // if digit, read Num
+                        readNumber();
+                        break;
+                    case SYMBOL: // if symbol, read symbol (for operands or other terminals)
+                        readSymbols();
+                        break;
+                    default:
+                        reportError(c); // otherwise, this is NOT an allowed character
+                        readNextChar(); // skip it
+                        kind = null; // no token was read
+                }
+            }
+
+            // The first slash of a comment is not a token, next() eats the rest of the line
+            if (comment && trace.tokens)
+                trace.line("Found comment");
+        }
+
+        // Eat characters until end of comment is reached
+        private void eatComment() {
+            while (c != '\n' && c != (char) -1) { // eat characters until a new line is reached
+                readNextChar();
+            }
+            comment = false; // the new line, if any, is eaten as white space
+        }
+
+        // Eat white spaces; lines are only counted when a position is asked for, see LineIndex
+        private void eatWhiteSpace() {
+            while (charClass(c) == SPACE) { // check if character is whitespace
+                readNextChar(); // go to next char to see if it is whitespace too or not
+            }
+        }
+
+        // Read a word (ID or keyword)
+        private void readWord() {
+            // loop until not a word; the word stays in the source, nothing is copied
+            do {
+                readNextChar(); // look at next char
+            } while ((charClass(c) & (LETTER | DIGIT | UNDERSCORE)) != 0); // all IDs have letters, numbers, or _
+
+            kind = TokenKind.ID; // tentatively set kind to ID
+
+            // check to see if the word we've read is a keyword or not: only the keyword in its hash slot can match
+            int length = offset - 1 - tokenStart;
+            int h = keywordHash((char) source.get(tokenStart), (char) source.get(tokenStart + length - 1), length);
+            byte[] keyword = KEYWORD_TABLE[h];
+            if (keyword != null && keyword.length == length && sourceMatches(keyword)) {
+                kind = KEYWORD_TABLE_KINDS[h]; // if it is, kind will instead be the keyword's kind
+                if (kind == TokenKind.BOOLEAN_LITERAL) number = length == 4 ? 1 : 0; // true or false
+            }
+        }
+
+        // Check if the current token's characters equal the given keyword
+        private boolean sourceMatches(byte[] keyword) {
+            for (int i = 0; i < keyword.length; i++) {
+                if (source.get(tokenStart + i) != keyword[i]) return false;
+            }
+            return true;
+        }
+        
+        // Read a number
+        private void readNumber() {
+            number = c - '0'; // the value is computed as we go
+            boolean tooLarge = false;
+
+            // loop until not a number
+            readNextChar(); // look at next char
+            while (charClass(c) == DIGIT) { // if a digit, then add it to the value
+                int digit = c - '0';
+                if (number > (Integer.MAX_VALUE - digit) / 10)
+                    tooLarge = true;
+                else
+                    number = number * 10 + digit;
+                readNextChar();
+            }
+
+            kind = TokenKind.NUM;
+            if (tooLarge) {
+                reportError("Number too large, largest is " + Integer.MAX_VALUE);
+                number = Integer.MAX_VALUE;
+            }
+        }
+
+        // Read symbols
+        private void readSymbols() {
+            char firstChar = c; // store the current char since we will need to compare to the next character
+            kind = SYMBOL_KINDS[firstChar]; // tentatively the one-character symbol
+
+            readNextChar(); // look at next char
+
+            // comparing startchar to next char; for two-character symbols, read the next char for next() setup
+            // (if we only saw one symbol by itself, the next character was already read)
+            switch (firstChar) {
+                case '/':
+                    if (c == '/') // if we see //, then it is a comment
+                        comment = true;
+                    break; // otherwise it can just be / on its own
+
+                case '=': // can be = or =<
+                    if (c == '<') {
+                        kind = TokenKind.LESS_EQUAL;
+                        readNextChar();
+                    }
+                    break; // no error reported since = can stand on its own
+
+                case '>': // can be > or >=
+                    if (c == '=') {
+                        kind = TokenKind.GREATER_EQUAL;
+                        readNextChar();
+                    }
+                    break; // no error reported since > can stand on their own
+
+                case ':': // can be : or :=
+                    if (c == '=') {
+                        kind = TokenKind.ASSIGN;
+                        readNextChar();
+                    }
+                    break; // no error reported since : can stand on their own
+
+                case '!': // we began with !
+                    if (c == '=') { // only != is allowed
+                        kind = TokenKind.NOT_EQUAL;
+                        readNextChar();
+                    } else { // anything else is an error (since ! isnt allowed on its own)
+                        reportError(firstChar);
+                        kind = null; // no token was read
+                    }
+                    break;
+
+
+                // and other symbols exist only on their own
+            }
+        }
+
+        // Getters
+
+        public String kind() {
+            return kind == null ? "" : kind.text();
+        }
+
+        public TokenKind tokenKind() {
+            return kind;
+        }
+
+        // Value of ID, NUM and BooleanLiteral tokens, made into a String only when asked for
+        public String stringValue() {
+            if (kind != TokenKind.ID && kind != TokenKind.NUM && kind != TokenKind.BOOLEAN_LITERAL) return "";
+            return text(source, tokenStart, tokenStart + tokenLength);
+        }
+
+        public int numValue() {
+            return number;
+        }
+
+        // Line and line character of the current token, found in lines
+        public int line() {
+            return lines.line(tokenStart);
+        }
+
+        public int column() {
+            return lines.column(tokenStart);
+        }
+
+        public LineIndex lines() {
+            return lines;
+        }
+
+        public ByteBuffer source() {
+            return source;
+        }
+
+        // Offset and length of the current token in the source
+        public int tokenStart() {
+            return tokenStart;
+        }
+
+        public int tokenLength() {
+            return tokenLength;
+        }
+
+        // Text of source[start, end)
+        static String text(ByteBuffer source, int start, int end) {
+            byte[] bytes = new byte[end - start];
+            source.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        public String position() {
+            return lines.position(tokenStart);
+        }
+
+        // Other methods utilized by parser
+
+        public boolean isNumber() {
+            return kind == TokenKind.NUM;
+        }
+
+        // Whether numValue() is the value of the token: a NUM, or a BooleanLiteral as 1 or 0
+        public boolean hasValue() {
+            return kind == TokenKind.NUM || kind == TokenKind.BOOLEAN_LITERAL;
+        }
+
+        public boolean isComment() {
+            return comment;
+        }
+
+        public boolean shouldEnd() {
+            return exit;
+        }
+
+        public boolean isEndOfText() {
+            return kind == TokenKind.END_OF_FILE;
+        }
+
+        public void reset() {
+            c = '\0';
+            source = null;
+            limit = 0;
+            offset = 0;
+            tokenStart = 0;
+            tokenLength = 0;
+            number = 0;
+            lines = new LineIndex();
+            kind = null;
+            comment = false;
+            exit = false;
+        }
+
+        // Lex the rest of the input into the given buffer, up to and including the end-of-file token
+        public void tokenize(TokenBuffer buffer) {
+            tokenize(buffer, Integer.MAX_VALUE);
+        }
+
+        // Lex at most maxTokens more tokens into the given buffer; returns true once the end-of-file token was added
+        public boolean tokenize(TokenBuffer buffer, int maxTokens) {
+            buffer.setSource(source);
+            for (int n = 0; n < maxTokens && !isEndOfText(); n++) {
+                next();
+                buffer.add(kind, tokenStart, tokenStart + tokenLength, hasValue() ? number : 0);
+            }
+            return isEndOfText();
+        }
+
+        // Number of bytes of input
+        public int inputSize() {
+            return limit;
+        }
+
+        // Report an error
+        private void reportError(char c) {
+            reportError("Illegal Character '" + c + "'");
+        }
+
+        // The default handler prints the error as the trace line would, so it is not traced as well
+        private void reportError(String message) {
+            if (trace.errors && errorHandler != PRINT_ERRORS)
+                trace.line(position() + "\t>>>>>> " + message);
+            errorHandler.error(line(), column(), message);
+            exit = true;
+        }
+
+        // Default error handler: print the error
+        static void printError(int line, int column, String message) {
+            System.out.println(line + ":" + column + "\t>>>>>> " + message);
+        }
+
+        public ErrorHandler errorHandler() {
+            return errorHandler;
+        }
+
+        public void setErrorHandler(ErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+        }
+
+        public void setTrace(Trace trace) {
+            this.trace = trace;
+        }
+
+        public void setMetrics(Metrics metrics) {
+            this.metrics = metrics;
+        }
+    }
+
+    // Inner class lexing a large file in parallel. Comments end at a new line and no token spans one,
+    // so the file is split into chunks at new lines and each chunk is mapped and lexed by its own
+    // LexicalAnalyzer on a ForkJoinPool. The tokens of each chunk are located by their offset in the
+    // file, and its end-of-file token is dropped unless it is the last chunk; all chunks share one
+    // LineIndex over the whole file. Read in order, the chunks hold the same tokens as a sequential
+    // LexicalAnalyzer gives for the whole file. Chunks are mapped separately, so files may exceed 2 GB.
+    public static class ParallelLexer {
+        private static final long MIN_CHUNK = 1 << 20; // smaller chunks cost more in tasks than they save
+        private static final long MAX_CHUNK = 1 << 30; // a mapping holds at most 2 GB
+
+        private final ForkJoinPool pool;
+        private final long chunkSize; // 0 to pick one from the file size and the pool's parallelism
+
+        public ParallelLexer() {
+            this(ForkJoinPool.commonPool(), 0);
+        }
+
+        public ParallelLexer(ForkJoinPool pool, long chunkSize) {
+            this.pool = pool;
+            this.chunkSize = chunkSize;
+        }
+
+        // Lex the file; lexical errors are passed to errors in file order, with their final positions
+        public TokenBuffer[] lex(Path path, LexicalAnalyzer.ErrorHandler errors) throws IOException {
+            ArrayList<ChunkTask> tasks = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long target = chunkSize > 0 ? chunkSize
+                        : Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4L)));
+                long start = 0;
+                boolean last;
+                do {
+                    long end = start + target >= size ? size : lineEnd(channel, start + target, size);
+                    if (end - start > Integer.MAX_VALUE)
+                        throw new IOException(path + ": line too long at offset " + start);
+                    last = end == size;
+                    ChunkTask task = new ChunkTask(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start, last);
+                    pool.execute(task);
+                    tasks.add(task);
+                    start = end;
+                } while (!last);
+            }
+
+            // Join in order; the lines are only found if there is an error, or a position is asked for
+            TokenBuffer[] chunks = new TokenBuffer[tasks.size()];
+            ByteBuffer[] sources = new ByteBuffer[tasks.size()];
+            for (int i = 0; i < sources.length; i++) sources[i] = tasks.get(i).bytes;
+            LineIndex lines = new LineIndex(sources);
+            for (int i = 0; i < chunks.length; i++) {
+                ChunkTask task = tasks.get(i);
+                task.join();
+                task.tokens.setLines(lines);
+                for (ChunkError e : task.errors) {
+                    long offset = task.base + e.offset;
+                    errors.error(lines.line(offset), lines.column(offset), e.message);
+                }
+                chunks[i] = task.tokens;
+            }
+            return chunks;
+        }
+
+        // Offset just past the first new line at or after from (size if there is none)
+        private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+            ByteBuffer block = ByteBuffer.allocate(4096);
+            for (long at = from; at < size; ) {
+                block.clear();
+                int n = channel.read(block, at);
+                if (n < 0) break;
+                for (int i = 0; i < n; i++) {
+                    if (block.get(i) == '\n') return at + i + 1;
+                }
+                at += n;
+            }
+            return size;
+        }
+
+        // Lexical error at an offset in a chunk, kept until the lines before the chunk are known
+        private static class ChunkError {
+            final int offset;
+            final String message;
+
+            ChunkError(int offset, String message) {
+                this.offset = offset;
+                this.message = message;
+            }
+        }
+
+        // Task lexing one chunk
+        private static class ChunkTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final ByteBuffer bytes;
+            private final long base; // offset of the chunk in the file
+            private final boolean last; // the chunk ends the file
+            private final TokenBuffer tokens = new TokenBuffer();
+            private final ArrayList<ChunkError> errors = new ArrayList<>();
+
+            ChunkTask(ByteBuffer bytes, long base, boolean last) {
+                this.bytes = bytes;
+                this.base = base;
+                this.last = last;
+            }
+
+            protected void compute() {
+                LexicalAnalyzer lexer = new LexicalAnalyzer();
+                lexer.setTrace(Trace.OFF); // tokens of different chunks would be traced out of order
+                lexer.setErrorHandler((line, column, message) -> errors.add(new ChunkError(lexer.tokenStart(), message)));
+                lexer.input(bytes);
+                lexer.tokenize(tokens);
+                tokens.setBase(base);
+                if (!last) tokens.removeLast(); // only the end of the last chunk is the end of the file
+            }
+        }
+    }
+
+    // Inner class reading the chunks of a ParallelLexer in order
+    public static class ChunkedTokenSource implements TokenSource {
+        private final TokenBuffer[] chunks;
+        private int chunk; // current chunk
+        private int index; // current token in the chunk
+
+        public ChunkedTokenSource(TokenBuffer[] chunks) {
+            this.chunks = chunks;
+        }
+
+        // Make sure chunks[chunk][index] is a token; false past the end
+        private boolean current() {
+            while (chunk < chunks.length && index == chunks[chunk].size()) {
+                chunk++;
+                index = 0;
+            }
+            return chunk < chunks.length;
+        }
+
+        public TokenKind peek() {
+            return current() ? chunks[chunk].kind(index) : null;
+        }
+
+        public Token peekToken() {
+            return current() ? chunks[chunk].token(index) : null;
+        }
+
+        public int numValue() {
+            return current() ? chunks[chunk].numValue(index) : 0;
+        }
+
+        public long location() {
+            return current() ? chunks[chunk].start(index) : 0;
+        }
+
+        public LineIndex lines() {
+            return chunks[0].lines(); // shared by the chunks
+        }
+
+        public int name(Names names) {
+            return chunks[chunk].name(index, names);
+        }
+
+        public void advance() {
+            if (current()) index++;
+        }
+    }
+
+    // Interface for where the parser pulls its tokens from, one token at a time
+    public interface TokenSource {
+        // Kind of the current token, null once moved past the end-of-file token
+        TokenKind peek();
+
+        // Current token as an object (for messages), null once moved past the end-of-file token
+        Token peekToken();
+
+        // Value of the current token: the number of a NUM, 1 or 0 for a BooleanLiteral
+        int numValue();
+
+        // Offset of the current token in the file; see lines() for its line and line character
+        long location();
+
+        // Where the lines of the file start, for messages
+        LineIndex lines();
+
+        // Id of the current token's text in names, for an ID
+        int name(Names names);
+
+        // Move to the next token
+        void advance();
+    }
+
+    // Inner class reading a TokenBuffer that was filled beforehand
+    public static class BufferTokenSource implements TokenSource {
+        private final TokenBuffer tokens;
+        private int index;
+
+        public BufferTokenSource(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        public TokenKind peek() {
+            return index < tokens.size() ? tokens.kind(index) : null;
+        }
+
+        public Token peekToken() {
+            return index < tokens.size() ? tokens.token(index) : null;
+        }
+
+        public int numValue() {
+            return index < tokens.size() ? tokens.numValue(index) : 0;
+        }
+
+        public long location() {
+            return index < tokens.size() ? tokens.start(index) : 0;
+        }
+
+        public LineIndex lines() {
+            return tokens.lines();
+        }
+
+        public int name(Names names) {
+            return tokens.name(index, names);
+        }
+
+        public void advance() {
+            if (index < tokens.size()) {
+                index++;
+            }
+        }
+
+        // Index of the current token in the buffer
+        public int index() {
+            return index;
+        }
+
+        public void seek(int index) {
+            this.index = index;
+        }
+    }
+
+    // Inner class pulling tokens from a LexicalAnalyzer as the parser asks for them, so the
+    // token stream is never held in memory; a small ring buffer holds the tokens looked ahead at
+    public static class LexerTokenSource implements TokenSource {
+        private static final int CAPACITY = 4; // power of two, so index & MASK wraps around the ring
+        private static final int MASK = CAPACITY - 1;
+
+        private final LexicalAnalyzer lexer;
+        private final TokenKind[] kinds = new TokenKind[CAPACITY];
+        private final int[] starts = new int[CAPACITY];
+        private final int[] ends = new int[CAPACITY];
+        private final int[] numbers = new int[CAPACITY];
+        private long head; // number of the current token
+        private long tail; // number of tokens read from the lexer so far
+        private boolean lexerDone; // the end-of-file token was read from the lexer
+        private TokenBuffer recorded; // every token read from the lexer, if they are kept
+
+        public LexerTokenSource(LexicalAnalyzer lexer) {
+            this.lexer = lexer;
+        }
+
+        // Also add every token read from the lexer to tokens, which keeps the tokens lexed for a parse
+        // that stops early the same as without it
+        public void record(TokenBuffer tokens) {
+            recorded = tokens;
+            tokens.setSource(lexer.source());
+        }
+
+        // Kind of the token `ahead` tokens after the current one (ahead < CAPACITY)
+        public TokenKind peek(int ahead) {
+            while (tail - head <= ahead) {
+                if (lexerDone) return null;
+                readToken();
+            }
+            return kinds[(int) (head + ahead) & MASK];
+        }
+
+        public TokenKind peek() {
+            return peek(0);
+        }
+
+        public Token peekToken() {
+            if (peek(0) == null) return null;
+            int i = (int) head & MASK;
+            TokenKind kind = kinds[i];
+            String value = kind == TokenKind.ID || kind == TokenKind.NUM || kind == TokenKind.BOOLEAN_LITERAL
+                    ? LexicalAnalyzer.text(lexer.source(), starts[i], ends[i]) : "";
+            return new Token(kind, value, lexer.lines().position(starts[i]));
+        }
+
+        public int numValue() {
+            return peek(0) == null ? 0 : numbers[(int) head & MASK];
+        }
+
+        public long location() {
+            return peek(0) == null ? 0 : starts[(int) head & MASK];
+        }
+
+        public LineIndex lines() {
+            return lexer.lines();
+        }
+
+        public int name(Names names) {
+            int i = (int) head & MASK;
+            return names.intern(lexer.source(), starts[i], ends[i]);
+        }
+
+        public void advance() {
+            if (peek(0) != null) {
+                head++;
+            }
+        }
+
+        // Pull the next token from the lexer into the ring
+        private void readToken() {
+            lexer.next();
+            int i = (int) tail & MASK;
+            kinds[i] = lexer.tokenKind();
+            starts[i] = lexer.tokenStart();
+            ends[i] = lexer.tokenStart() + lexer.tokenLength();
+            numbers[i] = lexer.hasValue() ? lexer.numValue() : 0;
+            if (recorded != null) recorded.add(kinds[i], starts[i], ends[i], numbers[i]);
+            tail++;
+            if (lexer.isEndOfText()) lexerDone = true;
+        }
+    }
+
+    // Inner class for a bounded single-producer/single-consumer ring of reusable slots, used to hand
+    // work from one pipeline stage to the next. The producer fills the slot returned by claim() and
+    // hands it over with publish(); the consumer reads the slot returned by take() and gives it back
+    // with release(). No locks: tail is only written by the producer and head only by the consumer.
+    public static class SpscRing<T> {
+        private final Object[] slots;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong(); // number of slots released by the consumer
+        private final AtomicLong tail = new AtomicLong(); // number of slots published by the producer
+        private volatile boolean closed; // set by either side to make the other stop waiting
+
+        public SpscRing(int capacity, Supplier<T> newSlot) {
+            if (Integer.bitCount(capacity) != 1)
+                throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+            slots = new Object[capacity];
+            for (int i = 0; i < capacity; i++) slots[i] = newSlot.get();
+            mask = capacity - 1;
+        }
+
+        // Producer: wait until a slot is free (the consumer is at most capacity slots behind) and return it, or null once closed
+        public T claim() {
+            long t = tail.get();
+            for (int spins = 0; t - head.get() == slots.length; spins = pause(spins)) {
+                if (closed) return null;
+            }
+            return slot(t);
+        }
+
+        // Producer: hand the claimed slot to the consumer
+        public void publish() {
+            tail.lazySet(tail.get() + 1);
+        }
+
+        // Consumer: wait until a slot was published and return it, or null once closed with nothing left
+        public T take() {
+            long h = head.get();
+            for (int spins = 0; h == tail.get(); spins = pause(spins)) {
+                if (closed) return null;
+            }
+            return slot(h);
+        }
+
+        // Consumer: give the taken slot back to the producer
+        public void release() {
+            head.lazySet(head.get() + 1);
+        }
+
+        public void close() {
+            closed = true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T slot(long n) {
+            return (T) slots[(int) n & mask];
+        }
+
+        // Busy-wait briefly, then back off to parking so a stalled stage does not burn a core
+        private static int pause(int spins) {
+            if (spins < 256) Thread.onSpinWait();
+            else LockSupport.parkNanos(20_000L);
+            return spins + 1;
+        }
+    }
+
+    // Inner class running the LexicalAnalyzer on its own thread, so lexing overlaps with parsing. The
+    // lexer thread fills batches of tokens and publishes them through an SpscRing; when the ring is
+    // full it waits for the parser. The last batch ends with the end-of-file token, after which the
+    // lexer thread exits. A further stage can be chained the same way with another SpscRing. Lexical
+    // errors travel in the batches too, and are passed to the lexer's error handler on the parser's
+    // thread as it reaches the token after them, the same errors at the same point as a
+    // LexerTokenSource gives however far ahead the lexer thread is.
+    public static class PipelinedTokenSource implements TokenSource, AutoCloseable {
+        private static final int BATCH_SIZE = 4096; // tokens per batch
+        private static final int BATCHES = 8; // batches in flight between the threads
+
+        private final SpscRing<Batch> ring = new SpscRing<>(BATCHES, Batch::new);
+        private final LexicalAnalyzer lexer;
+        private final LexicalAnalyzer.ErrorHandler errors; // the lexer's own, called on the parser's thread
+        private final LineIndex lines; // of the lexer's input, shared by the batches
+        private final Thread producer; // the lexer thread
+        private volatile Throwable failure; // what stopped the lexer thread, if it failed
+        private Batch filling; // batch the lexer thread is filling, only used by it
+        private Batch batch; // batch being read, null before the first take()
+        private int index; // current token in batch
+        private boolean ended; // moved past the end-of-file token
+
+        // Slot of the ring: a batch of tokens and the lexical errors found lexing them, in file order
+        private static class Batch {
+            final TokenBuffer tokens = new TokenBuffer();
+            final ArrayList<Integer> errorOffsets = new ArrayList<>();
+            final ArrayList<String> errorMessages = new ArrayList<>();
+            int reported; // errors passed on so far
+
+            void clear() {
+                tokens.clear();
+                errorOffsets.clear();
+                errorMessages.clear();
+                reported = 0;
+            }
+        }
+
+        public PipelinedTokenSource(LexicalAnalyzer lexer) {
+            this.lexer = lexer;
+            errors = lexer.errorHandler();
+            lines = lexer.lines();
+            lexer.setErrorHandler((line, column, message) -> {
+                filling.errorOffsets.add(lexer.tokenStart());
+                filling.errorMessages.add(message);
+            });
+            producer = new Thread(() -> produce(lexer), "lexer");
+            producer.setDaemon(true); // never keeps the JVM alive if the parser gives up
+            producer.start();
+        }
+
+        // Lexer thread: fill and publish batches until the end-of-file token
+        private void produce(LexicalAnalyzer lexer) {
+            try {
+                boolean endOfFile = false;
+                while (!endOfFile) {
+                    Batch slot = ring.claim();
+                    if (slot == null) return; // the parser closed the source
+                    slot.clear();
+                    filling = slot;
+                    endOfFile = lexer.tokenize(slot.tokens, BATCH_SIZE);
+                    slot.tokens.setLines(lines);
+                    ring.publish();
+                }
+            } catch (Throwable t) {
+                failure = t;
+                ring.close();
+            }
+        }
+
+        // Make sure batch[index] is a token, taking the next batch if needed, and pass on the
+        // lexical errors before it; false past the end
+        private boolean current() {
+            if (ended) return false;
+            while (batch == null || index == batch.tokens.size()) {
+                if (batch != null) ring.release();
+                batch = ring.take();
+                index = 0;
+                if (batch == null) throw new IllegalStateException("Lexer thread failed", failure);
+            }
+            if (batch.reported < batch.errorOffsets.size()) {
+                long start = batch.tokens.start(index);
+                while (batch.reported < batch.errorOffsets.size() && batch.errorOffsets.get(batch.reported) < start) {
+                    int offset = batch.errorOffsets.get(batch.reported);
+                    errors.error(lines.line(offset), lines.column(offset), batch.errorMessages.get(batch.reported));
+                    batch.reported++;
+                }
+            }
+            return true;
+        }
+
+        public TokenKind peek() {
+            return current() ? batch.tokens.kind(index) : null;
+        }
+
+        public Token peekToken() {
+            return current() ? batch.tokens.token(index) : null;
+        }
+
+        public int numValue() {
+            return current() ? batch.tokens.numValue(index) : 0;
+        }
+
+        public long location() {
+            return current() ? batch.tokens.start(index) : 0;
+        }
+
+        public LineIndex lines() {
+            return lines;
+        }
+
+        public int name(Names names) {
+            return batch.tokens.name(index, names);
+        }
+
+        public void advance() {
+            if (!current()) return;
+            if (batch.tokens.kind(index) == TokenKind.END_OF_FILE) {
+                ended = true;
+                ring.release();
+            } else {
+                index++;
+            }
+        }
+
+        // Stop the lexer thread, early if parsing gave up, and wait until it has; it finishes the batch
+        // it is filling first. The lexer is then left to this thread, with its own error handler back.
+        public void close() {
+            ring.close();
+            boolean interrupted = false;
+            while (producer.isAlive()) {
+                try {
+                    producer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the lexer is not ours until the thread has stopped
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            lexer.setErrorHandler(errors);
+        }
+    }
+
+    // Inner class holding a syntax tree as parallel arrays, one entry per node: its kind, first child,
+    // next sibling, a value and where it starts in the source. A node is an index into the arrays, so a
+    // tree costs a few ints per node however large it is, and is dropped all at once. Children are
+    // kept in source order:
+    //   PROGRAM     value: name id of the program, NONE if it has a syntax error instead; child: its BODY
+    //   BODY        DECLARATIONs, then the statements
+    //   DECLARATION value: ordinal of INT or BOOL; children: a NAME per variable
+    //   ASSIGN      children: the NAME assigned to, then the expression
+    //   IF          children: the condition, the BODY after then, the BODY after else if there is one
+    //   WHILE       children: the condition, then the BODY
+    //   PRINT       child: the expression
+    //   BINARY      value: ordinal of the operator token; children: the two operands
+    //   UNARY       value: ordinal of the operator token (-, not or mod); child: the operand
+    //   NAME        value: name id
+    //   NUMBER      value: the number
+    //   BOOLEAN     value: 1 for true, 0 for false
+    //   ERROR       stands in for an expression that has a syntax error
+    public static class Ast {
+        public static final int NONE = -1; // no node
+
+        public enum NodeKind { PROGRAM, BODY, DECLARATION, ASSIGN, IF, WHILE, PRINT, BINARY, UNARY, NAME, NUMBER, BOOLEAN, ERROR }
+
+        private static final NodeKind[] NODE_KINDS = NodeKind.values();
+
+        private int[] kinds = new int[256]; // NodeKind ordinal of each node
+        private int[] firstChildren = new int[256];
+        private int[] nextSiblings = new int[256];
+        private int[] values = new int[256]; // see the table above
+        private long[] locations = new long[256]; // offset in the source of the token each node starts at
+        private int size; // number of nodes
+        private int root = NONE;
+        private final Names names;
+        private LineIndex lines; // of the source, for the line and line character of a node
+
+        public Ast(Names names) {
+            this.names = names;
+        }
+
+        // Add a node without children
+        public int add(NodeKind kind, int value, long location) {
+            if (size == kinds.length) grow();
+            kinds[size] = kind.ordinal();
+            firstChildren[size] = NONE;
+            nextSiblings[size] = NONE;
+            values[size] = value;
+            locations[size] = location;
+            return size++;
+        }
+
+        // Add child to parent after its child last (NONE when it has none yet); returns the new last child
+        public int append(int parent, int last, int child) {
+            if (child == NONE) return last;
+            if (last == NONE) firstChildren[parent] = child;
+            else nextSiblings[last] = child;
+            return child;
+        }
+
+        // Add a BINARY node over two operands
+        public int binary(TokenKind operator, long location, int left, int right) {
+            int node = add(NodeKind.BINARY, operator.ordinal(), location);
+            append(node, append(node, NONE, left), right);
+            return node;
+        }
+
+        // Double the capacity of the node arrays
+        private void grow() {
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            values = Arrays.copyOf(values, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // The PROGRAM node, NONE if there is none
+        public int root() {
+            return root;
+        }
+
+        public void setRoot(int root) {
+            this.root = root;
+        }
+
+        public Names names() {
+            return names;
+        }
+
+        public void setLines(LineIndex lines) {
+            this.lines = lines;
+        }
+
+        public NodeKind kind(int node) {
+            return NODE_KINDS[kinds[node]];
+        }
+
+        public int firstChild(int node) {
+            return firstChildren[node];
+        }
+
+        public int nextSibling(int node) {
+            return nextSiblings[node];
+        }
+
+        // The i-th child of node, counting from 0, NONE if it has fewer children
+        public int child(int node, int i) {
+            int child = firstChildren[node];
+            while (i-- > 0 && child != NONE) child = nextSiblings[child];
+            return child;
+        }
+
+        public int value(int node) {
+            return values[node];
+        }
+
+        public void setValue(int node, int value) {
+            values[node] = value;
+        }
+
+        public void setFirstChild(int node, int child) {
+            firstChildren[node] = child;
+        }
+
+        public void setNextSibling(int node, int next) {
+            nextSiblings[node] = next;
+        }
+
+        // Turn node into a leaf of the given kind, such as a NUMBER for a folded expression; it keeps
+        // its place among its siblings and its location
+        public void replace(int node, NodeKind kind, int value) {
+            kinds[node] = kind.ordinal();
+            values[node] = value;
+            firstChildren[node] = NONE;
+        }
+
+        // The operator of a BINARY or UNARY node, the type of a DECLARATION
+        public TokenKind operator(int node) {
+            return TokenKind.of(values[node]);
+        }
+
+        // The name of a NAME or PROGRAM node
+        public String name(int node) {
+            return names.name(values[node]);
+        }
+
+        public long location(int node) {
+            return locations[node];
+        }
+
+        public int line(int node) {
+            return lines.line(locations[node]);
+        }
+
+        public int column(int node) {
+            return lines.column(locations[node]);
+        }
+
+        public String position(int node) {
+            return lines.position(locations[node]);
+        }
+
+        // Move every node located at or after from by the given bytes, for nodes after an edit
+        public void shift(long from, int offsets) {
+            for (int i = 0; i < size; i++) {
+                if (locations[i] >= from) locations[i] += offsets;
+            }
+        }
+
+        public void clear() {
+            size = 0;
+            root = NONE;
+        }
+
+        // Whether a path from the root goes through more than limit nodes, found without recursion
+        public boolean deeperThan(int limit) {
+            if (size <= limit || root == NONE) return false;
+            int[] nodes = new int[64];
+            int[] levels = new int[64];
+            nodes[0] = root;
+            levels[0] = 1;
+            int top = 1;
+            while (top > 0) {
+                top--;
+                int node = nodes[top];
+                int level = levels[top];
+                if (level > limit) return true;
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    if (top == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, top * 2);
+                        levels = Arrays.copyOf(levels, top * 2);
+                    }
+                    nodes[top] = child;
+                    levels[top] = level + 1;
+                    top++;
+                }
+            }
+            return false;
+        }
+
+        // A copy of the tree sharing the names, for a pass that changes the tree, such as the Optimizer
+        public Ast copy() {
+            Ast copy = new Ast(names);
+            copy.kinds = kinds.clone();
+            copy.firstChildren = firstChildren.clone();
+            copy.nextSiblings = nextSiblings.clone();
+            copy.values = values.clone();
+            copy.locations = locations.clone();
+            copy.size = size;
+            copy.root = root;
+            copy.lines = lines;
+            return copy;
+        }
+
+        // The same tree with the lines of another copy of its source, sharing the node arrays; for
+        // reading only
+        public Ast withLines(LineIndex lines) {
+            Ast view = new Ast(names);
+            view.kinds = kinds;
+            view.firstChildren = firstChildren;
+            view.nextSiblings = nextSiblings;
+            view.values = values;
+            view.locations = locations;
+            view.size = size;
+            view.root = root;
+            view.lines = lines;
+            return view;
+        }
+
+        // Interface for a pass over the tree, with a method per kind of node; a visitor goes on to the
+        // children it wants with accept
+        public interface Visitor<R> {
+            R visitProgram(Ast ast, int node);
+
+            R visitBody(Ast ast, int node);
+
+            R visitDeclaration(Ast ast, int node);
+
+            R visitAssign(Ast ast, int node);
+
+            R visitIf(Ast ast, int node);
+
+            R visitWhile(Ast ast, int node);
+
+            R visitPrint(Ast ast, int node);
+
+            R visitBinary(Ast ast, int node);
+
+            R visitUnary(Ast ast, int node);
+
+            R visitName(Ast ast, int node);
+
+            R visitNumber(Ast ast, int node);
+
+            R visitBoolean(Ast ast, int node);
+
+            R visitError(Ast ast, int node);
+        }
+
+        // Call the method of visitor for the kind of node
+        public <R> R accept(int node, Visitor<R> visitor) {
+            switch (kind(node)) {
+                case PROGRAM: return visitor.visitProgram(this, node);
+                case BODY: return visitor.visitBody(this, node);
+                case DECLARATION: return visitor.visitDeclaration(this, node);
+                case ASSIGN: return visitor.visitAssign(this, node);
+                case IF: return visitor.visitIf(this, node);
+                case WHILE: return visitor.visitWhile(this, node);
+                case PRINT: return visitor.visitPrint(this, node);
+                case BINARY: return visitor.visitBinary(this, node);
+                case UNARY: return visitor.visitUnary(this, node);
+                case NAME: return visitor.visitName(this, node);
+                case NUMBER: return visitor.visitNumber(this, node);
+                case BOOLEAN: return visitor.visitBoolean(this, node);
+                default: return visitor.visitError(this, node);
+            }
+        }
+    }
+
+    // Inner class printing a tree back as a program, one statement per line with every compound
+    // expression in parentheses, so what a tree means can be read off and the output parses back to
+    // the same tree
+    public static class AstPrinter implements Ast.Visitor<Void> {
+        private final StringBuilder out = new StringBuilder();
+        private String indent = "";
+
+        public static String print(Ast ast) {
+            AstPrinter printer = new AstPrinter();
+            if (ast.root() != Ast.NONE) deep(ast, () -> ast.accept(ast.root(), printer));
+            return printer.out.toString();
+        }
+
+        public Void visitProgram(Ast ast, int node) {
+            out.append("program ").append(ast.value(node) == Ast.NONE ? "<error>" : ast.name(node)).append(":\n");
+            indented(ast, ast.firstChild(node));
+            out.append("\n.\n");
+            return null;
+        }
+
+        // Declarations end with a semicolon each, statements are separated by one
+        public Void visitBody(Ast ast, int node) {
+            for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                out.append(indent);
+                ast.accept(child, this);
+                if (ast.kind(child) == Ast.NodeKind.DECLARATION) out.append(";\n");
+                else if (ast.nextSibling(child) != Ast.NONE) out.append(";\n");
+            }
+            return null;
+        }
+
+        public Void visitDeclaration(Ast ast, int node) {
+            out.append(ast.operator(node).text()).append(' ');
+            for (int name = ast.firstChild(node); name != Ast.NONE; name = ast.nextSibling(name)) {
+                if (name != ast.firstChild(node)) out.append(", ");
+                ast.accept(name, this);
+            }
+            return null;
+        }
+
+        public Void visitAssign(Ast ast, int node) {
+            ast.accept(ast.child(node, 0), this);
+            out.append(" := ");
+            ast.accept(ast.child(node, 1), this);
+            return null;
+        }
+
+        public Void visitIf(Ast ast, int node) {
+            out.append("if ");
+            ast.accept(ast.child(node, 0), this);
+            out.append(" then\n");
+            indented(ast, ast.child(node, 1));
+            int otherwise = ast.child(node, 2);
+            if (otherwise != Ast.NONE) {
+                out.append('\n').append(indent).append("else\n");
+                indented(ast, otherwise);
+            }
+            out.append('\n').append(indent).append("end");
+            return null;
+        }
+
+        public Void visitWhile(Ast ast, int node) {
+            out.append("while ");
+            ast.accept(ast.child(node, 0), this);
+            out.append(" do\n");
+            indented(ast, ast.child(node, 1));
+            out.append('\n').append(indent).append("end");
+            return null;
+        }
+
+        public Void visitPrint(Ast ast, int node) {
+            out.append("print ");
+            ast.accept(ast.firstChild(node), this);
+            return null;
+        }
+
+        public Void visitBinary(Ast ast, int node) {
+            out.append('(');
+            ast.accept(ast.child(node, 0), this);
+            out.append(' ').append(ast.operator(node).text()).append(' ');
+            ast.accept(ast.child(node, 1), this);
+            out.append(')');
+            return null;
+        }
+
+        public Void visitUnary(Ast ast, int node) {
+            out.append('(').append(ast.operator(node).text()).append(' ');
+            ast.accept(ast.firstChild(node), this);
+            out.append(')');
+            return null;
+        }
+
+        public Void visitName(Ast ast, int node) {
+            out.append(ast.name(node));
+            return null;
+        }
+
+        public Void visitNumber(Ast ast, int node) {
+            // Only the Optimizer makes negative numbers; the source has a - in front instead
+            int value = ast.value(node);
+            if (value == Integer.MIN_VALUE) out.append("(- 2147483647 - 1)");
+            else if (value < 0) out.append("(- ").append(-value).append(')');
+            else out.append(value);
+            return null;
+        }
+
+        public Void visitBoolean(Ast ast, int node) {
+            out.append(ast.value(node) != 0);
+            return null;
+        }
+
+        public Void visitError(Ast ast, int node) {
+            out.append("<error>");
+            return null;
+        }
+
+        // Print a body one level further in
+        private void indented(Ast ast, int body) {
+            String outer = indent;
+            indent = outer + "  ";
+            ast.accept(body, this);
+            indent = outer;
+        }
+    }
+
+    // Inner class checking a syntax tree: every name must be declared, once per block, and every
+    // expression must have the types its operators need. Each NAME node is resolved to the block
+    // depth of its declaration and a frame slot; blocks that are not nested in each other share slots.
+    // Bindings are kept on a stack, and an array indexed by name id points at the innermost binding of
+    // each name, with each binding pointing at the one it hides. So a lookup is an array access, and
+    // leaving a block pops only what it declared, however many names or blocks there are. The tree is
+    // walked with stacks of its own rather than by recursion, so blocks and expressions can be nested
+    // as deep as the parser nests them, which is as deep as the heap allows.
+    public static class TypeChecker {
+        // Types of expressions; ERROR for one with an error in it, already reported, so nothing that
+        // uses it is reported as well
+        public enum Type {
+            INT("int"), BOOL("bool"), ERROR("error");
+
+            private final String text;
+
+            Type(String text) {
+                this.text = text;
+            }
+
+            public String text() {
+                return text;
+            }
+        }
+
+        private static final Type[] TYPES = Type.values();
+
+        private final Ast ast;
+        private final ArrayList<String> diagnostics = new ArrayList<>(); // type errors, in the order found
+        private Trace trace = Trace.OFF;
+        private final byte[] types; // Type ordinal of each expression node
+        private final int[] slots; // frame slot of each NAME node, -1 if it is not declared
+        private final int[] depths; // block depth of the declaration of each NAME node
+        private final int[] innermost; // innermost binding of each name id, -1 if there is none
+
+        // Bindings in scope, innermost last; binding b is in frame slot b
+        private int[] bindingNames = new int[64];
+        private byte[] bindingTypes = new byte[64];
+        private int[] bindingDepths = new int[64];
+        private int[] bindingHidden = new int[64]; // binding of the same name hidden by this one, -1 if none
+        private int bindings;
+        private int depth = -1; // of the current block, 0 for the program's body
+        private int frameSize; // most bindings in scope at once
+
+        // Sibling chains being walked, innermost on top: the next node of each, and the bindings to
+        // pop back to at its end for the statements of a block, or -1 for a chain of blocks
+        private int[] cursors = new int[16];
+        private int[] outers = new int[16];
+        private int chains;
+        private int[] pending = new int[16]; // expression nodes to type, ~node once their operands are typed
+
+        public TypeChecker(Ast ast) {
+            this.ast = ast;
+            types = new byte[ast.size()];
+            slots = new int[ast.size()];
+            depths = new int[ast.size()];
+            innermost = new int[ast.names().size()];
+            Arrays.fill(innermost, -1);
+        }
+
+        // Check the whole tree; false if it has errors, see getDiagnostics()
+        public boolean check() {
+            int root = ast.root();
+            if (root != Ast.NONE && ast.firstChild(root) != Ast.NONE) {
+                push(ast.firstChild(root), -1);
+                statements();
+            }
+            return diagnostics.isEmpty();
+        }
+
+        public List<String> getDiagnostics() {
+            return diagnostics;
+        }
+
+        public void setTrace(Trace trace) {
+            this.trace = trace;
+        }
+
+        // Type of an expression node
+        public Type type(int node) {
+            return TYPES[types[node]];
+        }
+
+        // Frame slot of the variable a NAME node refers to or declares, -1 if it is not declared
+        public int slot(int node) {
+            return slots[node];
+        }
+
+        // Block depth of the declaration a NAME node refers to, 0 for the program's body
+        public int depth(int node) {
+            return depths[node];
+        }
+
+        // Number of slots a frame needs for all the variables of the program
+        public int frameSize() {
+            return frameSize;
+        }
+
+        // Walk the chains on the stack until it is empty: a block is entered when its chain reaches
+        // it, and its declarations are dropped at its end, uncovering the names they hid
+        private void statements() {
+            while (chains > 0) {
+                int top = chains - 1;
+                int node = cursors[top];
+                if (node == Ast.NONE) {
+                    if (outers[top] >= 0) {
+                        while (bindings > outers[top]) {
+                            bindings--;
+                            innermost[bindingNames[bindings]] = bindingHidden[bindings];
+                        }
+                        depth--;
+                    }
+                    chains--;
+                    continue;
+                }
+                cursors[top] = ast.nextSibling(node);
+                if (outers[top] < 0) {
+                    depth++;
+                    push(ast.firstChild(node), bindings);
+                } else {
+                    statement(node);
+                }
+            }
+        }
+
+        // Push a chain starting at first; outer as in outers
+        private void push(int first, int outer) {
+            if (chains == cursors.length) {
+                cursors = Arrays.copyOf(cursors, chains * 2);
+                outers = Arrays.copyOf(outers, chains * 2);
+            }
+            cursors[chains] = first;
+            outers[chains] = outer;
+            chains++;
+        }
+
+        // Check a declaration or a statement; the blocks of an if or while are pushed, to be checked next
+        private void statement(int node) {
+            switch (ast.kind(node)) {
+                case DECLARATION:
+                    Type type = ast.operator(node) == TokenKind.INT ? Type.INT : Type.BOOL;
+                    for (int name = ast.firstChild(node); name != Ast.NONE; name = ast.nextSibling(name)) {
+                        declare(name, type);
+                    }
+                    break;
+                case ASSIGN:
+                    int name = ast.child(node, 0);
+                    Type target = expression(name);
+                    Type value = expression(ast.child(node, 1));
+                    if (target != Type.ERROR && value != Type.ERROR && target != value)
+                        error("cannot assign " + value.text() + " to " + target.text() + " variable '" + ast.name(name) + "'", node);
+                    break;
+                case IF:
+                    condition(ast.child(node, 0), "if");
+                    push(ast.child(node, 1), -1); // the then block, and the else block after it
+                    break;
+                case WHILE:
+                    condition(ast.child(node, 0), "while");
+                    push(ast.child(node, 1), -1);
+                    break;
+                case PRINT:
+                    expression(ast.firstChild(node));
+                    break;
+                default:
+                    expression(node);
+            }
+        }
+
+        private void declare(int node, Type type) {
+            int id = ast.value(node);
+            int hidden = innermost[id];
+            if (hidden >= 0 && bindingDepths[hidden] == depth) {
+                error("'" + ast.name(node) + "' is already declared in this block", node);
+                resolve(node, hidden);
+                return;
+            }
+            if (bindings == bindingNames.length) {
+                bindingNames = Arrays.copyOf(bindingNames, bindings * 2);
+                bindingTypes = Arrays.copyOf(bindingTypes, bindings * 2);
+                bindingDepths = Arrays.copyOf(bindingDepths, bindings * 2);
+                bindingHidden = Arrays.copyOf(bindingHidden, bindings * 2);
+            }
+            bindingNames[bindings] = id;
+            bindingTypes[bindings] = (byte) type.ordinal();
+            bindingDepths[bindings] = depth;
+            bindingHidden[bindings] = hidden;
+            innermost[id] = bindings;
+            resolve(node, bindings);
+            bindings++;
+            frameSize = Math.max(frameSize, bindings);
+        }
+
+        private void resolve(int node, int binding) {
+            slots[node] = binding;
+            depths[node] = bindingDepths[binding];
+            types[node] = bindingTypes[binding];
+        }
+
+        private void condition(int node, String statement) {
+            Type type = expression(node);
+            if (type != Type.BOOL && type != Type.ERROR)
+                error("condition of " + statement + " must be bool, found " + type.text(), node);
+        }
+
+        // Type an expression, its operands before it, left before right
+        private Type expression(int node) {
+            int top = 0;
+            pending[top++] = node;
+            while (top > 0) {
+                int next = pending[--top];
+                if (next < 0) {
+                    next = ~next;
+                    if (ast.kind(next) == Ast.NodeKind.BINARY) binary(next);
+                    else unary(next);
+                    continue;
+                }
+                switch (ast.kind(next)) {
+                    case BINARY:
+                        if (top + 3 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+                        pending[top++] = ~next;
+                        pending[top++] = ast.child(next, 1);
+                        pending[top++] = ast.child(next, 0);
+                        break;
+                    case UNARY:
+                        if (top + 2 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+                        pending[top++] = ~next;
+                        pending[top++] = ast.firstChild(next);
+                        break;
+                    case NAME:
+                        name(next);
+                        break;
+                    case NUMBER:
+                        typed(next, Type.INT);
+                        break;
+                    case BOOLEAN:
+                        typed(next, Type.BOOL);
+                        break;
+                    default:
+                        typed(next, Type.ERROR);
+                }
+            }
+            return type(node);
+        }
+
+        // Type a BINARY node from the types of its operands
+        private void binary(int node) {
+            Type left = type(ast.child(node, 0));
+            Type right = type(ast.child(node, 1));
+            TokenKind operator = ast.operator(node);
+            Type operand; // needed by the operator, null for either if the same on both sides
+            Type result;
+            switch (operator) {
+                case AND:
+                case OR:
+                    operand = Type.BOOL;
+                    result = Type.BOOL;
+                    break;
+                case LESS:
+                case LESS_EQUAL:
+                case GREATER_EQUAL:
+                case GREATER:
+                    operand = Type.INT;
+                    result = Type.BOOL;
+                    break;
+                case EQUAL:
+                case NOT_EQUAL:
+                    operand = null;
+                    result = Type.BOOL;
+                    break;
+                default: // + - * / mod
+                    operand = Type.INT;
+                    result = Type.INT;
+            }
+            if (left == Type.ERROR || right == Type.ERROR) {
+                typed(node, Type.ERROR);
+            } else if (operand == null ? left != right : left != operand || right != operand) {
+                error("'" + operator.text() + "' needs " + (operand == null ? "operands of the same type" : operand.text() + " operands")
+                        + ", found " + left.text() + " and " + right.text(), node);
+                typed(node, Type.ERROR);
+            } else {
+                typed(node, result);
+            }
+        }
+
+        // Type a UNARY node from the type of its operand
+        private void unary(int node) {
+            Type operand = type(ast.firstChild(node));
+            TokenKind operator = ast.operator(node);
+            if (operator == TokenKind.MOD) {
+                error("'mod' needs two operands", node);
+                typed(node, Type.ERROR);
+                return;
+            }
+            Type result = operator == TokenKind.NOT ? Type.BOOL : Type.INT;
+            if (operand == Type.ERROR) {
+                typed(node, Type.ERROR);
+            } else if (operand != result) {
+                error("'" + operator.text() + "' needs a " + result.text() + " operand, found " + operand.text(), node);
+                typed(node, Type.ERROR);
+            } else {
+                typed(node, result);
+            }
+        }
+
+        // Resolve a NAME node to the innermost binding of its name
+        private void name(int node) {
+            int binding = innermost[ast.value(node)];
+            if (binding < 0) {
+                error("'" + ast.name(node) + "' is not declared", node);
+                slots[node] = -1;
+                typed(node, Type.ERROR);
+                return;
+            }
+            resolve(node, binding);
+        }
+
+        private Type typed(int node, Type type) {
+            types[node] = (byte) type.ordinal();
+            return type;
+        }
+
+        private void error(String message, int node) {
+            String diagnostic = "Type error: " + message + " Position: " + ast.position(node);
+            if (trace.errors)
+                trace.line(diagnostic);
+            diagnostics.add(diagnostic);
+        }
+    }
+
+    // Inner class optimizing a checked tree in place, in passes run in this order, each of which can be
+    // turned off:
+    //   fold      expressions of literals become a literal, e.g. (2 * 3) to 6 and not true to false
+    //   simplify  identities such as x + 0, x * 1, true and p, not not p; x * 0 only if x cannot fail
+    //   branches  if with a literal condition becomes the arm taken, while false is dropped
+    //   stores    assignments whose value is never read are dropped
+    // Nothing that can fail at runtime (division or mod by anything but a literal other than 0) is
+    // dropped or folded, so a program fails the same way. Rewritten nodes keep their ids, and their
+    // types and slots in the TypeChecker stay right; an arm taken is moved into the statements around
+    // it unless it declares variables, when it stays as the arm of an if true. A body the grammar
+    // needs a statement in keeps one it would lose, so the tree still prints as a program; an if with
+    // nothing but such statements in its arms goes if its condition cannot fail.
+    public static class Optimizer {
+        public enum Pass {
+            FOLD("fold"),
+            SIMPLIFY("simplify"),
+            BRANCHES("branches"),
+            STORES("stores");
+
+            private final String text;
+
+            Pass(String text) {
+                this.text = text;
+            }
+
+            public String text() {
+                return text;
+            }
+
+            // Passes from a list such as fold,simplify, or all or none
+            public static EnumSet<Pass> parse(String list) {
+                EnumSet<Pass> passes = EnumSet.noneOf(Pass.class);
+                if (list.equals("all")) return EnumSet.allOf(Pass.class);
+                if (list.equals("none")) return passes;
+                for (String name : list.split(",")) {
+                    Pass pass = null;
+                    for (Pass candidate : values()) {
+                        if (candidate.text.equals(name.trim())) pass = candidate;
+                    }
+                    if (pass == null) throw new IllegalArgumentException("unknown optimization " + name);
+                    passes.add(pass);
+                }
+                return passes;
+            }
+        }
+
+        private final Ast ast;
+        private final TypeChecker checker;
+        private final Set<Pass> passes;
+        private final int[] removed = new int[Pass.values().length]; // nodes each pass took out of the tree
+        private int[] dead = new int[0]; // by slot: stamp of the body walk it is dead in, see stores
+        private int stamp;
+        private boolean[] read; // by slot: read anywhere in the program
+        private boolean[] placeholders; // by node: statements kept only so their body has one
+
+        public Optimizer(Ast ast, TypeChecker checker, Set<Pass> passes) {
+            this.ast = ast;
+            this.checker = checker;
+            this.passes = passes;
+        }
+
+        public void optimize() {
+            if (ast.root() == Ast.NONE) return;
+            int body = ast.firstChild(ast.root());
+            placeholders = new boolean[ast.size()];
+            for (Pass pass : Pass.values()) {
+                if (!passes.contains(pass)) continue;
+                int before = count(ast.root());
+                switch (pass) {
+                    case FOLD:
+                    case SIMPLIFY:
+                        rewrite(body, pass);
+                        break;
+                    case BRANCHES:
+                        branches(body);
+                        break;
+                    case STORES:
+                        read = new boolean[checker.frameSize()];
+                        markReads(body);
+                        dead = new int[checker.frameSize()];
+                        stores(body);
+                        break;
+                }
+                removed[pass.ordinal()] = before - count(ast.root());
+            }
+        }
+
+        // Nodes the pass took out of the tree, 0 if it did not run
+        public int removed(Pass pass) {
+            return removed[pass.ordinal()];
+        }
+
+        // Nodes removed per pass run, e.g. "Optimized: fold -12, stores -3 nodes"
+        public String report() {
+            StringBuilder report = new StringBuilder("Optimized:");
+            String separator = " ";
+            for (Pass pass : Pass.values()) {
+                if (!passes.contains(pass)) continue;
+                report.append(separator).append(pass.text()).append(" -").append(removed(pass));
+                separator = ", ";
+            }
+            return report.append(passes.isEmpty() ? " nothing" : " nodes").toString();
+        }
+
+        // Nodes in the tree under node
+        private int count(int node) {
+            int count = 1;
+            for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                count += count(child);
+            }
+            return count;
+        }
+
+        // Fold or simplify the expressions under node, innermost first; returns the node to use in its
+        // place
+        private int rewrite(int node, Pass pass) {
+            int previous = Ast.NONE;
+            for (int child = ast.firstChild(node); child != Ast.NONE; ) {
+                int next = ast.nextSibling(child);
+                int replacement = rewrite(child, pass);
+                if (previous == Ast.NONE) ast.setFirstChild(node, replacement);
+                else ast.setNextSibling(previous, replacement);
+                ast.setNextSibling(replacement, next);
+                previous = replacement;
+                child = next;
+            }
+            Ast.NodeKind kind = ast.kind(node);
+            if (kind != Ast.NodeKind.BINARY && kind != Ast.NodeKind.UNARY) return node;
+            return pass == Pass.FOLD ? fold(node) : simplify(node);
+        }
+
+        private int fold(int node) {
+            int left = ast.firstChild(node);
+            TokenKind operator = ast.operator(node);
+            if (ast.kind(node) == Ast.NodeKind.UNARY) {
+                if (!literal(left)) return node;
+                if (operator == TokenKind.NOT) ast.replace(node, Ast.NodeKind.BOOLEAN, ast.value(left) ^ 1);
+                else if (operator == TokenKind.MINUS) ast.replace(node, Ast.NodeKind.NUMBER, -ast.value(left));
+                return node;
+            }
+            int right = ast.nextSibling(left);
+            if (!literal(left) || !literal(right)) return node;
+            int a = ast.value(left);
+            int b = ast.value(right);
+            switch (operator) {
+                case PLUS: ast.replace(node, Ast.NodeKind.NUMBER, a + b); break;
+                case MINUS: ast.replace(node, Ast.NodeKind.NUMBER, a - b); break;
+                case TIMES: ast.replace(node, Ast.NodeKind.NUMBER, a * b); break;
+                case DIVIDE:
+                    if (b != 0) ast.replace(node, Ast.NodeKind.NUMBER, a / b); // else left to fail when run
+                    break;
+                case MOD:
+                    if (b != 0) ast.replace(node, Ast.NodeKind.NUMBER, a % b);
+                    break;
+                case AND: ast.replace(node, Ast.NodeKind.BOOLEAN, a & b); break;
+                case OR: ast.replace(node, Ast.NodeKind.BOOLEAN, a | b); break;
+                case EQUAL: ast.replace(node, Ast.NodeKind.BOOLEAN, a == b ? 1 : 0); break;
+                case NOT_EQUAL: ast.replace(node, Ast.NodeKind.BOOLEAN, a != b ? 1 : 0); break;
+                case LESS: ast.replace(node, Ast.NodeKind.BOOLEAN, a < b ? 1 : 0); break;
+                case LESS_EQUAL: ast.replace(node, Ast.NodeKind.BOOLEAN, a <= b ? 1 : 0); break;
+                case GREATER_EQUAL: ast.replace(node, Ast.NodeKind.BOOLEAN, a >= b ? 1 : 0); break;
+                case GREATER: ast.replace(node, Ast.NodeKind.BOOLEAN, a > b ? 1 : 0); break;
+                default: break;
+            }
+            return node;
+        }
+
+        private int simplify(int node) {
+            int left = ast.firstChild(node);
+            TokenKind operator = ast.operator(node);
+            if (ast.kind(node) == Ast.NodeKind.UNARY) {
+                // not not p and - - x
+                boolean twice = ast.kind(left) == Ast.NodeKind.UNARY && ast.operator(left) == operator;
+                return twice ? ast.firstChild(left) : node;
+            }
+            int right = ast.nextSibling(left);
+            switch (operator) {
+                case PLUS:
+                    if (is(right, Ast.NodeKind.NUMBER, 0)) return left;
+                    if (is(left, Ast.NodeKind.NUMBER, 0)) return right;
+                    break;
+                case MINUS:
+                    if (is(right, Ast.NodeKind.NUMBER, 0)) return left;
+                    break;
+                case TIMES:
+                    if (is(right, Ast.NodeKind.NUMBER, 1)) return left;
+                    if (is(left, Ast.NodeKind.NUMBER, 1)) return right;
+                    if (is(right, Ast.NodeKind.NUMBER, 0) && !mayFail(left) || is(left, Ast.NodeKind.NUMBER, 0) && !mayFail(right)) {
+                        ast.replace(node, Ast.NodeKind.NUMBER, 0);
+                    }
+                    break;
+                case DIVIDE:
+                    if (is(right, Ast.NodeKind.NUMBER, 1)) return left;
+                    break;
+                case MOD:
+                    if (is(right, Ast.NodeKind.NUMBER, 1) && !mayFail(left)) ast.replace(node, Ast.NodeKind.NUMBER, 0);
+                    break;
+                case AND:
+                    // The right operand is not evaluated after false
+                    if (is(left, Ast.NodeKind.BOOLEAN, 1)) return right;
+                    if (is(right, Ast.NodeKind.BOOLEAN, 1)) return left;
+                    if (is(left, Ast.NodeKind.BOOLEAN, 0) || is(right, Ast.NodeKind.BOOLEAN, 0) && !mayFail(left)) {
+                        ast.replace(node, Ast.NodeKind.BOOLEAN, 0);
+                    }
+                    break;
+                case OR:
+                    if (is(left, Ast.NodeKind.BOOLEAN, 0)) return right;
+                    if (is(right, Ast.NodeKind.BOOLEAN, 0)) return left;
+                    if (is(left, Ast.NodeKind.BOOLEAN, 1) || is(right, Ast.NodeKind.BOOLEAN, 1) && !mayFail(left)) {
+                        ast.replace(node, Ast.NodeKind.BOOLEAN, 1);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return node;
+        }
+
+        // Take the arms of ifs with a literal condition and drop while false, in the statements of body
+        private void branches(int body) {
+            ArrayList<Integer> statements = new ArrayList<>();
+            int dropped = Ast.NONE;
+            for (int statement = ast.firstChild(body); statement != Ast.NONE; statement = ast.nextSibling(statement)) {
+                Ast.NodeKind kind = ast.kind(statement);
+                if (kind == Ast.NodeKind.WHILE) {
+                    int condition = ast.firstChild(statement);
+                    if (is(condition, Ast.NodeKind.BOOLEAN, 0)) {
+                        dropped = statement;
+                        continue;
+                    }
+                    branches(ast.nextSibling(condition));
+                } else if (kind == Ast.NodeKind.IF) {
+                    int condition = ast.firstChild(statement);
+                    int then = ast.nextSibling(condition);
+                    int otherwise = ast.nextSibling(then);
+                    branches(then);
+                    if (otherwise != Ast.NONE) branches(otherwise);
+                    if (ast.kind(condition) == Ast.NodeKind.BOOLEAN) {
+                        int taken = ast.value(condition) != 0 ? then : otherwise;
+                        if (taken == Ast.NONE) {
+                            dropped = statement;
+                            continue;
+                        }
+                        if (!declares(taken)) {
+                            for (int inner = ast.firstChild(taken); inner != Ast.NONE; inner = ast.nextSibling(inner)) {
+                                statements.add(inner);
+                            }
+                            continue;
+                        }
+                        // if true then taken end
+                        ast.setValue(condition, 1);
+                        ast.setNextSibling(condition, taken);
+                        ast.setNextSibling(taken, Ast.NONE);
+                    } else if (idle(statement)) {
+                        dropped = statement;
+                        continue;
+                    }
+                }
+                statements.add(statement);
+            }
+            relink(body, statements, dropped);
+        }
+
+        // Drop assignments to variables never read, and those overwritten or going out of scope before
+        // they are read: each body is walked backwards, knowing which slots are dead from there on
+        private void stores(int body) {
+            for (int statement = ast.firstChild(body); statement != Ast.NONE; statement = ast.nextSibling(statement)) {
+                Ast.NodeKind kind = ast.kind(statement);
+                if (kind == Ast.NodeKind.IF || kind == Ast.NodeKind.WHILE) {
+                    for (int arm = ast.nextSibling(ast.firstChild(statement)); arm != Ast.NONE; arm = ast.nextSibling(arm)) {
+                        stores(arm);
+                    }
+                }
+            }
+
+            ArrayList<Integer> statements = new ArrayList<>();
+            for (int statement = ast.firstChild(body); statement != Ast.NONE; statement = ast.nextSibling(statement)) {
+                statements.add(statement);
+            }
+            int walk = ++stamp;
+            // The variables of the body are dead at its end
+            for (int statement : statements) {
+                if (ast.kind(statement) != Ast.NodeKind.DECLARATION) continue;
+                for (int name = ast.firstChild(statement); name != Ast.NONE; name = ast.nextSibling(name)) {
+                    dead[checker.slot(name)] = walk;
+                }
+            }
+            ArrayList<Integer> kept = new ArrayList<>();
+            int dropped = Ast.NONE;
+            for (int i = statements.size() - 1; i >= 0; i--) {
+                int statement = statements.get(i);
+                if (ast.kind(statement) == Ast.NodeKind.ASSIGN) {
+                    int name = ast.firstChild(statement);
+                    int slot = checker.slot(name);
+                    int expression = ast.nextSibling(name);
+                    if ((!read[slot] || dead[slot] == walk) && !mayFail(expression)) {
+                        dropped = statement;
+                        continue;
+                    }
+                    dead[slot] = walk; // overwritten here
+                    live(expression);
+                } else if (ast.kind(statement) == Ast.NodeKind.IF && idle(statement)) {
+                    dropped = statement;
+                    continue;
+                } else if (ast.kind(statement) != Ast.NodeKind.DECLARATION) {
+                    live(statement);
+                }
+                kept.add(statement);
+            }
+            Collections.reverse(kept);
+            relink(body, kept, dropped);
+        }
+
+        // Mark the slots read under node as not dead in the current walk
+        private void live(int node) {
+            Ast.NodeKind kind = ast.kind(node);
+            if (kind == Ast.NodeKind.NAME) {
+                dead[checker.slot(node)] = 0;
+            } else if (kind == Ast.NodeKind.ASSIGN) {
+                live(ast.nextSibling(ast.firstChild(node)));
+            } else if (kind != Ast.NodeKind.DECLARATION) {
+                for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) live(child);
+            }
+        }
+
+        // Set read for the slots read under node
+        private void markReads(int node) {
+            Ast.NodeKind kind = ast.kind(node);
+            if (kind == Ast.NodeKind.NAME) {
+                read[checker.slot(node)] = true;
+            } else if (kind == Ast.NodeKind.ASSIGN) {
+                markReads(ast.nextSibling(ast.firstChild(node)));
+            } else if (kind != Ast.NodeKind.DECLARATION) {
+                for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) markReads(child);
+            }
+        }
+
+        // Make statements the children of body; if they are only declarations, dropped (a statement
+        // taken out, NONE if none was) is kept as well as a placeholder
+        private void relink(int body, List<Integer> statements, int dropped) {
+            if (dropped != Ast.NONE && !hasStatement(statements)) {
+                statements.add(dropped);
+                placeholders[dropped] = true;
+            }
+            int previous = Ast.NONE;
+            for (int statement : statements) {
+                if (previous == Ast.NONE) ast.setFirstChild(body, statement);
+                else ast.setNextSibling(previous, statement);
+                previous = statement;
+            }
+            if (previous == Ast.NONE) ast.setFirstChild(body, Ast.NONE);
+            else ast.setNextSibling(previous, Ast.NONE);
+        }
+
+        private boolean literal(int node) {
+            Ast.NodeKind kind = ast.kind(node);
+            return kind == Ast.NodeKind.NUMBER || kind == Ast.NodeKind.BOOLEAN;
+        }
+
+        private boolean is(int node, Ast.NodeKind kind, int value) {
+            return ast.kind(node) == kind && ast.value(node) == value;
+        }
+
+        private boolean hasStatement(List<Integer> statements) {
+            for (int statement : statements) {
+                if (ast.kind(statement) != Ast.NodeKind.DECLARATION) return true;
+            }
+            return false;
+        }
+
+        // Whether an if does nothing: its arms have only declarations and placeholders, and its
+        // condition cannot fail
+        private boolean idle(int statement) {
+            int condition = ast.firstChild(statement);
+            if (mayFail(condition)) return false;
+            for (int arm = ast.nextSibling(condition); arm != Ast.NONE; arm = ast.nextSibling(arm)) {
+                for (int inner = ast.firstChild(arm); inner != Ast.NONE; inner = ast.nextSibling(inner)) {
+                    if (ast.kind(inner) != Ast.NodeKind.DECLARATION && !placeholders[inner]) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean declares(int body) {
+            return ast.firstChild(body) != Ast.NONE && ast.kind(ast.firstChild(body)) == Ast.NodeKind.DECLARATION;
+        }
+
+        // Whether evaluating an expression can fail: a division or mod by anything but a literal other than 0
+        private boolean mayFail(int node) {
+            if (ast.kind(node) == Ast.NodeKind.BINARY) {
+                TokenKind operator = ast.operator(node);
+                int right = ast.nextSibling(ast.firstChild(node));
+                if ((operator == TokenKind.DIVIDE || operator == TokenKind.MOD) && (ast.kind(right) != Ast.NodeKind.NUMBER || ast.value(right) == 0)) {
+                    return true;
+                }
+            }
+            for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                if (mayFail(child)) return true;
+            }
+            return false;
+        }
+    }
+
+    // Inner class running a checked program by walking its tree. Variables live in an int array at the
+    // slots the TypeChecker gave them, so running never looks a name up, and values are never boxed:
+    // bools are 1 and 0. A block's variables are set to 0 (false) each time it is entered. and and or
+    // only evaluate their right operand if needed; int arithmetic wraps around on overflow. Printed
+    // values go to a buffer that is written out in large pieces.
+    public static class Interpreter {
+        private static final int OUTPUT_BUFFER = 8192; // chars held back before writing out
+
+        private final Ast ast;
+        private final TypeChecker checker;
+        private final int[] frame;
+        private final Writer out;
+        private final StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER + 64);
+        private final Profiler profiler;
+        private long steps; // nodes executed or evaluated
+
+        public Interpreter(Ast ast, TypeChecker checker, Writer out) {
+            this(ast, checker, out, Profiler.OFF);
+        }
+
+        public Interpreter(Ast ast, TypeChecker checker, Writer out, Profiler profiler) {
+            this.ast = ast;
+            this.checker = checker;
+            this.frame = new int[checker.frameSize()];
+            this.out = out;
+            this.profiler = profiler;
+        }
+
+        // Run the program, writing what it prints to out; throws RuntimeError on division by zero
+        public void run() throws IOException {
+            try {
+                if (ast.root() != Ast.NONE) execute(ast.firstChild(ast.root()));
+            } finally {
+                out.append(buffer);
+                buffer.setLength(0);
+                out.flush();
+            }
+        }
+
+        // Number of nodes executed or evaluated by run()
+        public long getSteps() {
+            return steps;
+        }
+
+        private void execute(int node) throws IOException {
+            steps++;
+            if (profiler.enabled) profiler.execute(node);
+            switch (ast.kind(node)) {
+                case BODY:
+                    for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                        execute(child);
+                    }
+                    if (profiler.enabled) profiler.leave();
+                    break;
+                case DECLARATION:
+                    for (int name = ast.firstChild(node); name != Ast.NONE; name = ast.nextSibling(name)) {
+                        frame[checker.slot(name)] = 0;
+                        if (profiler.enabled) profiler.declare(checker.slot(name), name);
+                    }
+                    break;
+                case ASSIGN: {
+                    int name = ast.firstChild(node);
+                    frame[checker.slot(name)] = evaluate(ast.nextSibling(name));
+                    if (profiler.enabled) profiler.write(checker.slot(name));
+                    break;
+                }
+                case IF: {
+                    int condition = ast.firstChild(node);
+                    int then = ast.nextSibling(condition);
+                    if (evaluate(condition) != 0) {
+                        execute(then);
+                    } else if (ast.nextSibling(then) != Ast.NONE) {
+                        execute(ast.nextSibling(then));
+                    }
+                    break;
+                }
+                case WHILE: {
+                    int condition = ast.firstChild(node);
+                    int body = ast.nextSibling(condition);
+                    while (evaluate(condition) != 0) {
+                        execute(body);
+                    }
+                    break;
+                }
+                case PRINT: {
+                    int expression = ast.firstChild(node);
+                    int value = evaluate(expression);
+                    if (checker.type(expression) == TypeChecker.Type.BOOL) buffer.append(value != 0);
+                    else buffer.append(value);
+                    buffer.append('\n');
+                    if (buffer.length() >= OUTPUT_BUFFER) {
+                        out.append(buffer);
+                        buffer.setLength(0);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("not a statement: " + ast.kind(node));
+            }
+        }
+
+        private int evaluate(int node) {
+            steps++;
+            switch (ast.kind(node)) {
+                case NUMBER:
+                case BOOLEAN:
+                    return ast.value(node);
+                case NAME:
+                    return frame[checker.slot(node)];
+                case UNARY: {
+                    int operand = evaluate(ast.firstChild(node));
+                    return ast.operator(node) == TokenKind.NOT ? operand ^ 1 : -operand;
+                }
+                case BINARY: {
+                    int left = ast.firstChild(node);
+                    int right = ast.nextSibling(left);
+                    TokenKind operator = ast.operator(node);
+                    if (operator == TokenKind.AND) return evaluate(left) != 0 ? evaluate(right) : 0;
+                    if (operator == TokenKind.OR) return evaluate(left) != 0 ? 1 : evaluate(right);
+                    return binary(operator, evaluate(left), evaluate(right), node);
+                }
+                default:
+                    throw new IllegalStateException("not an expression: " + ast.kind(node));
+            }
+        }
+
+        private int binary(TokenKind operator, int left, int right, int node) {
+            switch (operator) {
+                case PLUS: return left + right;
+                case MINUS: return left - right;
+                case TIMES: return left * right;
+                case DIVIDE:
+                    if (right == 0) throw new RuntimeError("division by zero", ast.position(node));
+                    return left / right;
+                case MOD:
+                    if (right == 0) throw new RuntimeError("division by zero", ast.position(node));
+                    return left % right;
+                case EQUAL: return left == right ? 1 : 0;
+                case NOT_EQUAL: return left != right ? 1 : 0;
+                case LESS: return left < right ? 1 : 0;
+                case LESS_EQUAL: return left <= right ? 1 : 0;
+                case GREATER_EQUAL: return left >= right ? 1 : 0;
+                case GREATER: return left > right ? 1 : 0;
+                default: throw new IllegalStateException("not a binary operator: " + operator);
+            }
+        }
+    }
+
+    // Inner class profiling a program run by the Interpreter, for --profile: how many times each
+    // statement ran, how many times each while loop went round, how many times each variable was
+    // assigned, and which lines the time went to. The counts are exact, an increment of one array
+    // indexed by node: a statement counts its runs, a BODY the times it was entered (the iterations
+    // of a while loop), and the NAME declaring a variable the assignments to it. Time is sampled:
+    // every SAMPLE_INTERVAL, a thread of its own looks at the statements being run, innermost last,
+    // and the time of a line is its share of the samples. report() shows the hot spots; save()
+    // writes the samples as collapsed stacks, one line per stack and its count, for flame graph
+    // tools. Profiler.OFF profiles nothing, and costs the Interpreter a final field read per statement.
+    public static class Profiler {
+        public static final String EXTENSION = ".folded"; // of the collapsed stacks saved next to a source
+        public static final Profiler OFF = new Profiler();
+        private static final long SAMPLE_INTERVAL = 100_000; // nanos
+        private static final int HOT_SPOTS = 10; // lines, loops and variables in the report
+        // The sampler reads the statements being run while the Interpreter writes them: opaque
+        // accesses are enough for it to see recent ones, and cost the Interpreter no fences
+        private static final VarHandle STACK = MethodHandles.arrayElementVarHandle(int[].class);
+        private static final VarHandle DEPTH;
+
+        static {
+            try {
+                DEPTH = MethodHandles.lookup().findVarHandle(Profiler.class, "depth", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        final boolean enabled;
+        private final Ast ast;
+        private final long[] counts; // per node, see above
+        private final int[] declarations; // per frame slot, the NAME node declaring its variable last
+        private int[] stack = new int[16]; // per body being run, outermost first: its statement being run, or NONE
+        private int depth = -1; // of the innermost body being run
+        private final HashMap<String, long[]> samples = new HashMap<>(); // per stack of statements, as "node;node"
+        private long sampled; // samples taken
+        private volatile boolean sampling;
+        private Thread sampler;
+        private long started;
+        private long nanos; // from start() to stop()
+
+        public Profiler(Ast ast, TypeChecker checker) {
+            this.enabled = true;
+            this.ast = ast;
+            this.counts = new long[ast.size()];
+            this.declarations = new int[checker.frameSize()];
+        }
+
+        private Profiler() {
+            this.enabled = false;
+            this.ast = null;
+            this.counts = new long[0];
+            this.declarations = new int[0];
+        }
+
+        // Start sampling; the program is run after this
+        public void start() {
+            started = System.nanoTime();
+            sampling = true;
+            sampler = new Thread(this::sample, "profiler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+
+        // Stop sampling once the program has run
+        public void stop() {
+            nanos = System.nanoTime() - started;
+            sampling = false;
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // A statement or BODY is about to run
+        void execute(int node) {
+            counts[node]++;
+            if (ast.kind(node) == Ast.NodeKind.BODY) {
+                int depth = this.depth + 1;
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                STACK.setOpaque(stack, depth, Ast.NONE);
+                DEPTH.setOpaque(this, depth);
+            } else {
+                STACK.setOpaque(stack, depth, node);
+            }
+        }
+
+        // The innermost BODY has run
+        void leave() {
+            DEPTH.setOpaque(this, depth - 1);
+        }
+
+        // The variable of a NAME in a DECLARATION is now the one in slot
+        void declare(int slot, int name) {
+            declarations[slot] = name;
+        }
+
+        // The variable in slot is assigned
+        void write(int slot) {
+            counts[declarations[slot]]++;
+        }
+
+        // Runs of a statement, entries of a BODY, or assignments to the variable a NAME declares
+        public long count(int node) {
+            return counts[node];
+        }
+
+        // The sampler thread: note the stack of statements being run until stopped
+        private void sample() {
+            StringBuilder key = new StringBuilder();
+            while (sampling) {
+                LockSupport.parkNanos(SAMPLE_INTERVAL);
+                int[] stack = this.stack; // an older, shorter one while it grows: the stack is cut short
+                int depth = Math.min((int) DEPTH.getOpaque(this), stack.length - 1);
+                key.setLength(0);
+                for (int i = 0; i <= depth; i++) {
+                    int node = (int) STACK.getOpaque(stack, i);
+                    if (node == Ast.NONE) break;
+                    if (i > 0) key.append(';');
+                    key.append(node);
+                }
+                if (key.length() == 0) continue; // between statements of the program body
+                samples.computeIfAbsent(key.toString(), k -> new long[1])[0]++;
+                sampled++;
+            }
+        }
+
+        // The hot spots: lines by time then runs, while loops by iterations, variables by assignments
+        public String report() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format(Locale.ROOT, "Profile: %.3f s, %d samples%n", nanos / 1e9, sampled));
+            HashMap<Integer, long[]> lines = new HashMap<>(); // runs and samples per line
+            ArrayList<Integer> loops = new ArrayList<>();
+            ArrayList<Integer> variables = new ArrayList<>();
+            for (int node = 0; node < counts.length; node++) {
+                if (counts[node] == 0) continue;
+                if (ast.kind(node) == Ast.NodeKind.WHILE) loops.add(node); // and its line, below
+                switch (ast.kind(node)) {
+                    case WHILE:
+                    case DECLARATION:
+                    case ASSIGN:
+                    case IF:
+                    case PRINT:
+                        lines.computeIfAbsent(ast.line(node), line -> new long[2])[0] += counts[node];
+                        break;
+                    case NAME:
+                        variables.add(node);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            samples.forEach((stack, count) -> {
+                int innermost = Integer.parseInt(stack.substring(stack.lastIndexOf(';') + 1));
+                lines.computeIfAbsent(ast.line(innermost), line -> new long[2])[1] += count[0];
+            });
+
+            report.append("Hot lines:\n");
+            ArrayList<Integer> hot = new ArrayList<>(lines.keySet());
+            hot.sort((a, b) -> {
+                long[] x = lines.get(a), y = lines.get(b);
+                return x[1] != y[1] ? Long.compare(y[1], x[1]) : x[0] != y[0] ? Long.compare(y[0], x[0]) : Integer.compare(a, b);
+            });
+            for (int line : hot.subList(0, Math.min(HOT_SPOTS, hot.size()))) {
+                long[] counted = lines.get(line);
+                double share = sampled == 0 ? 0 : (double) counted[1] / sampled;
+                report.append(String.format(Locale.ROOT, "  line %d: %d runs, %.3f s (%.1f%%)%n", line, counted[0], share * nanos / 1e9, share * 100));
+            }
+            loops.sort((a, b) -> Long.compare(counts[ast.nextSibling(ast.firstChild(b))], counts[ast.nextSibling(ast.firstChild(a))]));
+            report.append("Hot loops:\n");
+            for (int loop : loops.subList(0, Math.min(HOT_SPOTS, loops.size()))) {
+                report.append("  while at ").append(ast.position(loop)).append(": ")
+                        .append(counts[ast.nextSibling(ast.firstChild(loop))]).append(" iterations in ").append(counts[loop]).append(" runs\n");
+            }
+            variables.sort((a, b) -> Long.compare(counts[b], counts[a]));
+            report.append("Most assigned:\n");
+            for (int name : variables.subList(0, Math.min(HOT_SPOTS, variables.size()))) {
+                report.append("  ").append(ast.name(name)).append(" declared at ").append(ast.position(name)).append(": ")
+                        .append(counts[name]).append(" assignments\n");
+            }
+            return report.toString();
+        }
+
+        // The samples as collapsed stacks: a line per stack of statements, outermost first, separated
+        // by semicolons, then a space and the number of samples of it
+        public void writeStacks(Writer out) throws IOException {
+            int program = ast.root();
+            String root = program == Ast.NONE ? "program" : "program " + ast.name(program);
+            for (String stack : samples.keySet()) {
+                out.append(root);
+                for (String node : stack.split(";")) {
+                    int statement = Integer.parseInt(node);
+                    out.append(';').append(ast.kind(statement).name().toLowerCase(Locale.ROOT)).append(' ').append(ast.position(statement));
+                }
+                out.append(' ').append(Long.toString(samples.get(stack)[0])).append('\n');
+            }
+        }
+
+        // File the collapsed stacks of a source file are saved in
+        public static Path savedFile(Path source) {
+            return source.resolveSibling(source.getFileName() + EXTENSION);
+        }
+
+        // Save the collapsed stacks next to the source file; a failure only means there is no file
+        public void save(Path source) {
+            try (Writer out = Files.newBufferedWriter(savedFile(source))) {
+                writeStacks(out);
+            } catch (IOException e) {
+                // not saved
+            }
+        }
+    }
+
+    // Inner class holding a compiled program for the VirtualMachine: int instructions, the NUM literals
+    // they use, and the positions of the instructions that can fail. It can be saved to a file and read
+    // back, so a program that has not changed is run without lexing, parsing or checking it again;
+    // the file holds a hash of the source it was compiled from to tell.
+    public static class Bytecode {
+        // Opcodes, each followed in the code by its operands if it has any
+        public static final int CONST = 0; // k: push constants[k]
+        public static final int TRUE = 1; // push 1
+        public static final int FALSE = 2; // push 0
+        public static final int LOAD = 3; // slot: push frame[slot]
+        public static final int STORE = 4; // slot: pop into frame[slot]
+        public static final int CLEAR = 5; // slot: frame[slot] = 0
+        public static final int NEG = 6;
+        public static final int NOT = 7;
+        public static final int ADD = 8;
+        public static final int SUB = 9;
+        public static final int MUL = 10;
+        public static final int DIV = 11; // location: index in locations, for division by zero
+        public static final int MOD = 12; // location: the same
+        public static final int EQ = 13;
+        public static final int NE = 14;
+        public static final int LT = 15;
+        public static final int LE = 16;
+        public static final int GE = 17;
+        public static final int GT = 18;
+        public static final int JUMP = 19; // offset: from the next instruction
+        public static final int JUMP_IF_FALSE = 20; // offset: pop, jump if 0
+        public static final int JUMP_IF_TRUE = 21; // offset: pop, jump if not 0
+        public static final int PRINT_INT = 22; // pop and print as a number
+        public static final int PRINT_BOOL = 23; // pop and print as true or false
+        public static final int HALT = 24;
+
+        // Operands of each opcode
+        static final int[] OPERANDS = {1, 0, 0, 1, 1, 1, 0, 0, 0, 0, 0, 1, 1, 0, 0, 0, 0, 0, 0, 1, 1, 1, 0, 0, 0};
+
+        public static final String EXTENSION = ".pbc"; // of the file saved next to the source
+        private static final int MAGIC = 0x50424346; // "PBCF"
+        private static final int VERSION = 1; // changed whenever the format or the opcodes change
+
+        final int[] code;
+        final int[] constants;
+        final long[] locations; // line in the high half, line character in the low half
+        final int frameSize;
+        final int maxStack;
+        final byte[] sourceHash; // SHA-256 of the source
+
+        public Bytecode(int[] code, int[] constants, long[] locations, int frameSize, int maxStack, byte[] sourceHash) {
+            this.code = code;
+            this.constants = constants;
+            this.locations = locations;
+            this.frameSize = frameSize;
+            this.maxStack = maxStack;
+            this.sourceHash = sourceHash;
+        }
+
+        public int size() {
+            return code.length;
+        }
+
+        // Hash of the source a program is compiled from
+        public static byte[] hash(ByteBuffer source) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(source.duplicate().rewind());
+                return digest.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // every JDK has SHA-256
+            }
+        }
+
+        // File the bytecode of a source file is saved in
+        public static Path savedFile(Path source) {
+            return source.resolveSibling(source.getFileName() + EXTENSION);
+        }
+
+        // The bytecode saved for the given source file, null if there is none or it is out of date
+        public static Bytecode saved(Path source, ByteBuffer sourceBytes) {
+            Path file = savedFile(source);
+            if (!Files.exists(file)) return null;
+            try {
+                Bytecode bytecode = read(file);
+                return bytecode != null && Arrays.equals(bytecode.sourceHash, hash(sourceBytes)) ? bytecode : null;
+            } catch (IOException | RuntimeException e) {
+                return null; // unreadable, it is compiled again
+            }
+        }
+
+        // Save next to the source file; a failure only means the program is compiled again next time
+        public void save(Path source) {
+            try {
+                write(savedFile(source));
+            } catch (IOException e) {
+                // not saved
+            }
+        }
+
+        // Write to a file: magic, version, source hash, frame size, stack size, then the constants,
+        // locations and code, each as a length and the values; all big-endian
+        public void write(Path file) throws IOException {
+            int size = 8 * 4 + sourceHash.length + constants.length * 4 + locations.length * 8 + code.length * 4;
+            ByteBuffer bytes = ByteBuffer.allocate(size);
+            bytes.putInt(MAGIC).putInt(VERSION).putInt(sourceHash.length).put(sourceHash);
+            bytes.putInt(frameSize).putInt(maxStack);
+            bytes.putInt(constants.length);
+            bytes.asIntBuffer().put(constants);
+            bytes.position(bytes.position() + constants.length * 4);
+            bytes.putInt(locations.length);
+            bytes.asLongBuffer().put(locations);
+            bytes.position(bytes.position() + locations.length * 8);
+            bytes.putInt(code.length);
+            bytes.asIntBuffer().put(code);
+            bytes.position(bytes.position() + code.length * 4);
+            bytes.flip();
+
+            // Written to a file of its own, then moved over the old one, which is never left half written
+            Path partial = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                    while (bytes.hasRemaining()) channel.write(bytes);
+                }
+                Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                try {
+                    Files.deleteIfExists(partial);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        // Read a file written by write; null if it is of another version, or if it is not bytecode the
+        // VirtualMachine can run without going out of its arrays, see verify(), as a file that was
+        // damaged or not written by write
+        public static Bytecode read(Path file) throws IOException {
+            ByteBuffer bytes;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (bytes.remaining() < 12 || bytes.getInt() != MAGIC || bytes.getInt() != VERSION) return null;
+            int hashLength = bytes.getInt();
+            if (hashLength < 0 || hashLength > bytes.remaining() - 8) return null;
+            byte[] sourceHash = new byte[hashLength];
+            bytes.get(sourceHash);
+            int frameSize = bytes.getInt();
+            int maxStack = bytes.getInt();
+            int[] constants = ints(bytes);
+            if (constants == null || bytes.remaining() < 4) return null;
+            int length = bytes.getInt();
+            if (length < 0 || length > bytes.remaining() / 8) return null;
+            long[] locations = new long[length];
+            bytes.asLongBuffer().get(locations);
+            bytes.position(bytes.position() + locations.length * 8);
+            int[] code = ints(bytes);
+            if (code == null || bytes.hasRemaining()) return null;
+            Bytecode bytecode = new Bytecode(code, constants, locations, frameSize, maxStack, sourceHash);
+            return bytecode.verify() ? bytecode : null;
+        }
+
+        // Ints written as their number and their values; null if they would run past the end of bytes
+        private static int[] ints(ByteBuffer bytes) {
+            if (bytes.remaining() < 4) return null;
+            int length = bytes.getInt();
+            if (length < 0 || length > bytes.remaining() / 4) return null;
+            int[] values = new int[length];
+            bytes.asIntBuffer().get(values);
+            bytes.position(bytes.position() + length * 4);
+            return values;
+        }
+
+        // Whether the VirtualMachine can run the code without going out of its arrays, as it does not
+        // check: every opcode is known and has its operands; constants, slots and locations are in
+        // range; every jump lands on an instruction; no instruction runs past the end of the code; and
+        // the stack has the same height wherever paths meet, enough for every instruction and never
+        // more than maxStack. The frame and stack sizes are at most the size of the code, as a program
+        // the Compiler wrote clears each slot it uses and pushes at most once per instruction.
+        boolean verify() {
+            if (frameSize < 0 || frameSize > code.length || maxStack < 0 || maxStack > code.length) return false;
+            boolean[] instructions = new boolean[code.length];
+            for (int pc = 0; pc < code.length; pc += 1 + OPERANDS[code[pc]]) {
+                int opcode = code[pc];
+                if (opcode < 0 || opcode >= OPERANDS.length || pc + OPERANDS[opcode] >= code.length) return false;
+                instructions[pc] = true;
+                switch (opcode) {
+                    case CONST:
+                        if (code[pc + 1] < 0 || code[pc + 1] >= constants.length) return false;
+                        break;
+                    case LOAD:
+                    case STORE:
+                    case CLEAR:
+                        if (code[pc + 1] < 0 || code[pc + 1] >= frameSize) return false;
+                        break;
+                    case DIV:
+                    case MOD:
+                        if (code[pc + 1] < 0 || code[pc + 1] >= locations.length) return false;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            // Stack height before each instruction reached, found along every path from the first
+            int[] heights = new int[code.length];
+            Arrays.fill(heights, -1);
+            int[] pending = new int[16]; // instructions reached whose successors are still to be looked at
+            int count = 0;
+            if (code.length == 0) return false;
+            heights[0] = 0;
+            pending[count++] = 0;
+            while (count > 0) {
+                int pc = pending[--count];
+                int opcode = code[pc];
+                int height = heights[pc];
+                int popped; // operands taken off the stack
+                int pushed;
+                switch (opcode) {
+                    case CONST: case TRUE: case FALSE: case LOAD: popped = 0; pushed = 1; break;
+                    case STORE: case JUMP_IF_FALSE: case JUMP_IF_TRUE: case PRINT_INT: case PRINT_BOOL: popped = 1; pushed = 0; break;
+                    case NEG: case NOT: popped = 1; pushed = 1; break;
+                    case CLEAR: case JUMP: case HALT: popped = 0; pushed = 0; break;
+                    default: popped = 2; pushed = 1; // the binary operators
+                }
+                if (height < popped || height - popped + pushed > maxStack) return false;
+                height += pushed - popped;
+                long next = (long) pc + 1 + OPERANDS[opcode];
+                boolean jumps = opcode == JUMP || opcode == JUMP_IF_FALSE || opcode == JUMP_IF_TRUE;
+                long[] successors = {opcode == JUMP || opcode == HALT ? Long.MIN_VALUE : next, jumps ? next + code[pc + 1] : Long.MIN_VALUE};
+                for (long successor : successors) {
+                    if (successor == Long.MIN_VALUE) continue; // none
+                    if (successor < 0 || successor >= code.length || !instructions[(int) successor]) return false;
+                    int at = (int) successor;
+                    if (heights[at] < 0) {
+                        heights[at] = height;
+                        if (count == pending.length) pending = Arrays.copyOf(pending, count * 2);
+                        pending[count++] = at;
+                    } else if (heights[at] != height) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    // Inner class compiling a checked syntax tree to Bytecode for a stack machine. Jumps are relative
+    // to the instruction after them; a while loop jumps to its condition at the bottom once, then each
+    // time round takes a single conditional jump back to the top.
+    public static class Compiler implements Ast.Visitor<Void> {
+        private final TypeChecker checker;
+        private int[] code = new int[256];
+        private int size; // of code
+        private final ArrayList<Integer> constants = new ArrayList<>();
+        private final HashMap<Integer, Integer> constantIndex = new HashMap<>(); // each number is in constants once
+        private final ArrayList<Long> locations = new ArrayList<>();
+        private int depth; // of the stack at the current instruction
+        private int maxStack;
+
+        private Compiler(TypeChecker checker) {
+            this.checker = checker;
+        }
+
+        // Compile the program of ast, which the checker has checked without errors
+        public static Bytecode compile(Ast ast, TypeChecker checker, byte[] sourceHash) {
+            Compiler compiler = new Compiler(checker);
+            if (ast.root() != Ast.NONE) ast.accept(ast.root(), compiler);
+            compiler.emit(Bytecode.HALT);
+            int[] constants = new int[compiler.constants.size()];
+            for (int i = 0; i < constants.length; i++) constants[i] = compiler.constants.get(i);
+            long[] locations = new long[compiler.locations.size()];
+            for (int i = 0; i < locations.length; i++) locations[i] = compiler.locations.get(i);
+            return new Bytecode(Arrays.copyOf(compiler.code, compiler.size), constants, locations,
+                    checker.frameSize(), compiler.maxStack, sourceHash);
+        }
+
+        public Void visitProgram(Ast ast, int node) {
+            ast.accept(ast.firstChild(node), this);
+            return null;
+        }
+
+        public Void visitBody(Ast ast, int node) {
+            for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                ast.accept(child, this);
+            }
+            return null;
+        }
+
+        public Void visitDeclaration(Ast ast, int node) {
+            for (int name = ast.firstChild(node); name != Ast.NONE; name = ast.nextSibling(name)) {
+                emit(Bytecode.CLEAR, checker.slot(name));
+            }
+            return null;
+        }
+
+        public Void visitAssign(Ast ast, int node) {
+            int name = ast.firstChild(node);
+            ast.accept(ast.nextSibling(name), this);
+            emit(Bytecode.STORE, checker.slot(name));
+            return null;
+        }
+
+        public Void visitIf(Ast ast, int node) {
+            int condition = ast.firstChild(node);
+            int then = ast.nextSibling(condition);
+            int otherwise = ast.nextSibling(then);
+            ast.accept(condition, this);
+            int toElse = emitJump(Bytecode.JUMP_IF_FALSE);
+            ast.accept(then, this);
+            if (otherwise == Ast.NONE) {
+                land(toElse);
+            } else {
+                int toEnd = emitJump(Bytecode.JUMP);
+                land(toElse);
+                ast.accept(otherwise, this);
+                land(toEnd);
+            }
+            return null;
+        }
+
+        public Void visitWhile(Ast ast, int node) {
+            int condition = ast.firstChild(node);
+            int toCondition = emitJump(Bytecode.JUMP);
+            int top = size;
+            ast.accept(ast.nextSibling(condition), this);
+            land(toCondition);
+            ast.accept(condition, this);
+            emit(Bytecode.JUMP_IF_TRUE, top - (size + 2));
+            return null;
+        }
+
+        public Void visitPrint(Ast ast, int node) {
+            int expression = ast.firstChild(node);
+            ast.accept(expression, this);
+            emit(checker.type(expression) == TypeChecker.Type.BOOL ? Bytecode.PRINT_BOOL : Bytecode.PRINT_INT);
+            return null;
+        }
+
+        public Void visitBinary(Ast ast, int node) {
+            int left = ast.firstChild(node);
+            int right = ast.nextSibling(left);
+            TokenKind operator = ast.operator(node);
+            if (operator == TokenKind.AND || operator == TokenKind.OR) {
+                // a and b: a, if false the result is false, else b; a or b the other way round
+                boolean and = operator == TokenKind.AND;
+                ast.accept(left, this);
+                int shortCut = emitJump(and ? Bytecode.JUMP_IF_FALSE : Bytecode.JUMP_IF_TRUE);
+                ast.accept(right, this);
+                int toEnd = emitJump(Bytecode.JUMP);
+                depth--; // only one of the two results is pushed
+                land(shortCut);
+                emit(and ? Bytecode.FALSE : Bytecode.TRUE);
+                land(toEnd);
+                return null;
+            }
+            ast.accept(left, this);
+            ast.accept(right, this);
+            switch (operator) {
+                case PLUS: emit(Bytecode.ADD); break;
+                case MINUS: emit(Bytecode.SUB); break;
+                case TIMES: emit(Bytecode.MUL); break;
+                case DIVIDE: emit(Bytecode.DIV, location(ast, node)); break;
+                case MOD: emit(Bytecode.MOD, location(ast, node)); break;
+                case EQUAL: emit(Bytecode.EQ); break;
+                case NOT_EQUAL: emit(Bytecode.NE); break;
+                case LESS: emit(Bytecode.LT); break;
+                case LESS_EQUAL: emit(Bytecode.LE); break;
+                case GREATER_EQUAL: emit(Bytecode.GE); break;
+                case GREATER: emit(Bytecode.GT); break;
+                default: throw new IllegalStateException("not a binary operator: " + operator);
+            }
+            return null;
+        }
+
+        public Void visitUnary(Ast ast, int node) {
+            ast.accept(ast.firstChild(node), this);
+            emit(ast.operator(node) == TokenKind.NOT ? Bytecode.NOT : Bytecode.NEG);
+            return null;
+        }
+
+        public Void visitName(Ast ast, int node) {
+            emit(Bytecode.LOAD, checker.slot(node));
+            return null;
+        }
+
+        public Void visitNumber(Ast ast, int node) {
+            Integer index = constantIndex.get(ast.value(node));
+            if (index == null) {
+                index = constants.size();
+                constants.add(ast.value(node));
+                constantIndex.put(ast.value(node), index);
+            }
+            emit(Bytecode.CONST, index);
+            return null;
+        }
+
+        public Void visitBoolean(Ast ast, int node) {
+            emit(ast.value(node) != 0 ? Bytecode.TRUE : Bytecode.FALSE);
+            return null;
+        }
+
+        public Void visitError(Ast ast, int node) {
+            throw new IllegalStateException("cannot compile a tree with syntax errors");
+        }
+
+        // Index in locations of the position of node
+        private int location(Ast ast, int node) {
+            locations.add(((long) ast.line(node) << 32) | ast.column(node));
+            return locations.size() - 1;
+        }
+
+        private void emit(int opcode) {
+            append(opcode);
+            track(opcode);
+        }
+
+        private void emit(int opcode, int operand) {
+            append(opcode);
+            append(operand);
+            track(opcode);
+        }
+
+        // Emit a jump to be pointed later with land; returns where its offset goes
+        private int emitJump(int opcode) {
+            emit(opcode, 0);
+            return size - 1;
+        }
+
+        // Point the jump with its offset at jump to the next instruction emitted
+        private void land(int jump) {
+            code[jump] = size - (jump + 1);
+        }
+
+        private void append(int value) {
+            if (size == code.length) code = Arrays.copyOf(code, size * 2);
+            code[size++] = value;
+        }
+
+        // Follow the depth of the stack
+        private void track(int opcode) {
+            switch (opcode) {
+                case Bytecode.CONST:
+                case Bytecode.TRUE:
+                case Bytecode.FALSE:
+                case Bytecode.LOAD:
+                    depth++;
+                    maxStack = Math.max(maxStack, depth);
+                    break;
+                case Bytecode.STORE:
+                case Bytecode.JUMP_IF_FALSE:
+                case Bytecode.JUMP_IF_TRUE:
+                case Bytecode.PRINT_INT:
+                case Bytecode.PRINT_BOOL:
+                case Bytecode.ADD:
+                case Bytecode.SUB:
+                case Bytecode.MUL:
+                case Bytecode.DIV:
+                case Bytecode.MOD:
+                case Bytecode.EQ:
+                case Bytecode.NE:
+                case Bytecode.LT:
+                case Bytecode.LE:
+                case Bytecode.GE:
+                case Bytecode.GT:
+                    depth--;
+                    break;
+                default: // NEG, NOT, CLEAR, JUMP, HALT leave it as it is
+            }
+        }
+    }
+
+    // Inner class running Bytecode: a dispatch loop over the instructions, with the operands on an int
+    // stack and the variables in an int frame. Runs programs the same way as the Interpreter; it keeps
+    // no count of steps, which would cost about a sixth of its speed on loops.
+    public static class VirtualMachine {
+        private static final int OUTPUT_BUFFER = 8192; // chars held back before writing out
+
+        // Run the program, writing what it prints to out; throws RuntimeError on division by zero
+        public void run(Bytecode program, Writer out) throws IOException {
+            final int[] code = program.code;
+            final int[] constants = program.constants;
+            final int[] frame = new int[program.frameSize];
+            final int[] stack = new int[program.maxStack + 1];
+            StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER + 64);
+            int sp = 0; // stack[sp - 1] is the top
+            int pc = 0;
+            try {
+                while (true) {
+                    switch (code[pc++]) {
+                        case Bytecode.CONST: stack[sp++] = constants[code[pc++]]; break;
+                        case Bytecode.TRUE: stack[sp++] = 1; break;
+                        case Bytecode.FALSE: stack[sp++] = 0; break;
+                        case Bytecode.LOAD: stack[sp++] = frame[code[pc++]]; break;
+                        case Bytecode.STORE: frame[code[pc++]] = stack[--sp]; break;
+                        case Bytecode.CLEAR: frame[code[pc++]] = 0; break;
+                        case Bytecode.NEG: stack[sp - 1] = -stack[sp - 1]; break;
+                        case Bytecode.NOT: stack[sp - 1] ^= 1; break;
+                        case Bytecode.ADD: sp--; stack[sp - 1] += stack[sp]; break;
+                        case Bytecode.SUB: sp--; stack[sp - 1] -= stack[sp]; break;
+                        case Bytecode.MUL: sp--; stack[sp - 1] *= stack[sp]; break;
+                        case Bytecode.DIV:
+                            sp--;
+                            if (stack[sp] == 0) throw divisionByZero(program, code[pc]);
+                            stack[sp - 1] /= stack[sp];
+                            pc++;
+                            break;
+                        case Bytecode.MOD:
+                            sp--;
+                            if (stack[sp] == 0) throw divisionByZero(program, code[pc]);
+                            stack[sp - 1] %= stack[sp];
+                            pc++;
+                            break;
+                        case Bytecode.EQ: sp--; stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0; break;
+                        case Bytecode.NE: sp--; stack[sp - 1] = stack[sp - 1] != stack[sp] ? 1 : 0; break;
+                        case Bytecode.LT: sp--; stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0; break;
+                        case Bytecode.LE: sp--; stack[sp - 1] = stack[sp - 1] <= stack[sp] ? 1 : 0; break;
+                        case Bytecode.GE: sp--; stack[sp - 1] = stack[sp - 1] >= stack[sp] ? 1 : 0; break;
+                        case Bytecode.GT: sp--; stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0; break;
+                        case Bytecode.JUMP: pc += code[pc] + 1; break;
+                        case Bytecode.JUMP_IF_FALSE: pc += stack[--sp] == 0 ? code[pc] + 1 : 1; break;
+                        case Bytecode.JUMP_IF_TRUE: pc += stack[--sp] != 0 ? code[pc] + 1 : 1; break;
+                        case Bytecode.PRINT_INT:
+                        case Bytecode.PRINT_BOOL:
+                            if (code[pc - 1] == Bytecode.PRINT_BOOL) buffer.append(stack[--sp] != 0);
+                            else buffer.append(stack[--sp]);
+                            buffer.append('\n');
+                            if (buffer.length() >= OUTPUT_BUFFER) {
+                                out.append(buffer);
+                                buffer.setLength(0);
+                            }
+                            break;
+                        case Bytecode.HALT:
+                            return;
+                        default:
+                            throw new IllegalStateException("bad opcode " + code[pc - 1] + " at " + (pc - 1));
+                    }
+                }
+            } finally {
+                out.append(buffer);
+                out.flush();
+            }
+        }
+
+        private static RuntimeError divisionByZero(Bytecode program, int location) {
+            long where = program.locations[location];
+            return new RuntimeError("division by zero", (where >>> 32) + ":" + (int) where);
+        }
+    }
+
+    // Inner class compiling a checked syntax tree to JVM bytecode, loaded as a hidden class so HotSpot
+    // compiles the program itself: variables become locals, if and while become branches, and the
+    // arithmetic its int instructions. The class file is written by hand, in version 49 so it needs
+    // no stack map frames. A method of HotSpot is compiled only below 8000 bytes of bytecode, so the
+    // statements of large bodies are moved out into methods of their own, in groups; the variables a
+    // method uses are loaded from a frame array on entry and stored back on exit. Returns null for a
+    // program that still does not fit the limits of the JVM, which can be run by the VirtualMachine.
+    public static class JvmCompiler {
+        private static final int OUTLINE_NODES = 1000; // statements of a body larger than this are moved out
+        private static final int FANOUT = 8; // methods the statements of a large body are split into
+        private static final int MAX_BRANCH = 32767; // bytes of code a method has at most, so branches reach
+        private static final int CLASS_VERSION = 49;
+        private static final String CLASS = "parsing/JitProgram";
+        private static final String OUTPUT = "parsing/Parsing$JitOutput";
+        private static final String DESCRIPTOR = "(L" + OUTPUT + ";[I)V"; // of every method: output, frame
+
+        // JVM opcodes used
+        private static final int ICONST_0 = 0x03;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int LDC = 0x12;
+        private static final int LDC_W = 0x13;
+        private static final int ILOAD = 0x15;
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int IALOAD = 0x2e;
+        private static final int ISTORE = 0x36;
+        private static final int IASTORE = 0x4f;
+        private static final int DUP = 0x59;
+        private static final int IADD = 0x60;
+        private static final int ISUB = 0x64;
+        private static final int IMUL = 0x68;
+        private static final int IDIV = 0x6c;
+        private static final int IREM = 0x70;
+        private static final int INEG = 0x74;
+        private static final int IXOR = 0x82;
+        private static final int IFEQ = 0x99;
+        private static final int IFNE = 0x9a;
+        private static final int IF_ICMPEQ = 0x9f;
+        private static final int IF_ICMPNE = 0xa0;
+        private static final int IF_ICMPLT = 0xa1;
+        private static final int IF_ICMPGE = 0xa2;
+        private static final int IF_ICMPGT = 0xa3;
+        private static final int IF_ICMPLE = 0xa4;
+        private static final int GOTO = 0xa7;
+        private static final int RETURN = 0xb1;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int ATHROW = 0xbf;
+        private static final int WIDE = 0xc4;
+
+        private final Ast ast;
+        private final TypeChecker checker;
+        private final int[] sizes; // nodes in the subtree of each node
+        private final Bytes pool = new Bytes(); // constant pool entries
+        private final HashMap<String, Integer> poolIndex = new HashMap<>();
+        private int poolCount = 1; // entries start at 1
+        private final ArrayList<Method> methods = new ArrayList<>();
+        private Method method; // being compiled
+        private int outlined; // methods moved out, for their names
+        private boolean tooLarge;
+
+        private JvmCompiler(Ast ast, TypeChecker checker) {
+            this.ast = ast;
+            this.checker = checker;
+            this.sizes = new int[ast.size()];
+        }
+
+        // Compile and load the program of ast, which the checker has checked without errors; null if
+        // it does not fit in the methods of a class
+        public static JitProgram compile(Ast ast, TypeChecker checker) {
+            byte[] classFile = new JvmCompiler(ast, checker).classFile();
+            if (classFile == null) return null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+                MethodHandle run = lookup.findStatic(lookup.lookupClass(), "run",
+                        MethodType.methodType(void.class, JitOutput.class, int[].class));
+                return new JitProgram(run, checker.frameSize());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("generated class does not load", e);
+            }
+        }
+
+        // The class file, or null if the program is too large
+        private byte[] classFile() {
+            int thisClass = classConstant(CLASS);
+            int superClass = classConstant("java/lang/Object");
+            int codeName = utf8("Code");
+            method = new Method("run");
+            if (ast.root() != Ast.NONE) {
+                count(ast.root());
+                body(ast.firstChild(ast.root()));
+            }
+            finish();
+            if (tooLarge) return null;
+
+            ArrayList<byte[]> codes = new ArrayList<>();
+            for (Method m : methods) {
+                codes.add(m.code()); // adds constants of its own, so before the pool is written
+                utf8(m.name);
+            }
+            int descriptor = utf8(DESCRIPTOR);
+            if (poolCount > 65535) return null;
+            Bytes file = new Bytes();
+            file.u4(0xcafebabe).u2(0).u2(CLASS_VERSION);
+            file.u2(poolCount).bytes(pool.data, pool.size);
+            file.u2(0x0030).u2(thisClass).u2(superClass).u2(0).u2(0); // final super, no interfaces or fields
+            file.u2(methods.size());
+            for (int i = 0; i < methods.size(); i++) {
+                Method m = methods.get(i);
+                byte[] code = codes.get(i);
+                if (code.length > 65535 || m.slots.size() + 2 > 65535) return null;
+                file.u2(m.name.equals("run") ? 0x0009 : 0x000a); // public or private, static
+                file.u2(utf8(m.name)).u2(descriptor).u2(1);
+                file.u2(codeName).u4(12 + code.length);
+                file.u2(Math.max(m.maxStack, 3)).u2(m.slots.size() + 2); // the prologue and epilogue need 3
+                file.u4(code.length).bytes(code, code.length).u2(0).u2(0);
+            }
+            file.u2(0);
+            return Arrays.copyOf(file.data, file.size);
+        }
+
+        // Number the nodes in each subtree
+        private int count(int node) {
+            int size = 1;
+            for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                size += count(child);
+            }
+            sizes[node] = size;
+            return size;
+        }
+
+        // The statements of a body; if it is large, they are split into up to FANOUT parts, each in a
+        // method of its own, split again while they are large
+        private void body(int node) {
+            ArrayList<Integer> statements = new ArrayList<>();
+            for (int child = ast.firstChild(node); child != Ast.NONE; child = ast.nextSibling(child)) {
+                statements.add(child);
+            }
+            statements(statements, 0, statements.size(), sizes[node] - 1);
+        }
+
+        // Statements from to to of a list, with the given number of nodes
+        private void statements(List<Integer> statements, int from, int to, int nodes) {
+            if (nodes <= OUTLINE_NODES || to - from == 1) {
+                // A single large statement stays here, its own bodies are split up
+                for (int i = from; i < to; i++) statement(statements.get(i));
+                return;
+            }
+            // Parts smaller than part, or of a single statement, so each is smaller than the whole
+            int part = nodes / FANOUT + 1;
+            int start = from;
+            int partNodes = 0;
+            for (int i = from; i < to; i++) {
+                int size = sizes[statements.get(i)];
+                if (size >= part || partNodes + size > part) {
+                    if (i > start) outline(statements, start, i, partNodes);
+                    start = i;
+                    partNodes = 0;
+                }
+                if (size >= part) {
+                    outline(statements, i, i + 1, size);
+                    start = i + 1;
+                } else {
+                    partNodes += size;
+                }
+            }
+            if (to > start) outline(statements, start, to, partNodes);
+        }
+
+        // Compile statements into a new method and call it, passing the variables it uses through the
+        // frame
+        private void outline(List<Integer> statements, int from, int to, int nodes) {
+            if (to - from == 1 && nodes > OUTLINE_NODES) {
+                statement(statements.get(from)); // nothing gained by a method around it
+                return;
+            }
+            Method caller = method;
+            method = new Method("m" + outlined++);
+            statements(statements, from, to, nodes);
+            Method callee = method;
+            finish();
+            method = caller;
+
+            for (int slot : callee.slots) {
+                method.op(ALOAD_1, 1);
+                method.pushInt(slot);
+                method.load(method.local(slot));
+                method.op(IASTORE, -3);
+            }
+            method.op(ALOAD_0, 1);
+            method.op(ALOAD_1, 1);
+            method.invoke(INVOKESTATIC, methodConstant(CLASS, callee.name, DESCRIPTOR), -2);
+            for (int slot : callee.slots) {
+                method.op(ALOAD_1, 1);
+                method.pushInt(slot);
+                method.op(IALOAD, -1);
+                method.store(method.local(slot));
+            }
+        }
+
+        private void finish() {
+            if (method.code.size > MAX_BRANCH) tooLarge = true;
+            methods.add(method);
+        }
+
+        private void statement(int node) {
+            switch (ast.kind(node)) {
+                case DECLARATION:
+                    for (int name = ast.firstChild(node); name != Ast.NONE; name = ast.nextSibling(name)) {
+                        method.op(ICONST_0, 1);
+                        method.store(method.local(checker.slot(name)));
+                    }
+                    break;
+                case ASSIGN: {
+                    int name = ast.firstChild(node);
+                    expression(ast.nextSibling(name));
+                    method.store(method.local(checker.slot(name)));
+                    break;
+                }
+                case IF: {
+                    int condition = ast.firstChild(node);
+                    int then = ast.nextSibling(condition);
+                    int otherwise = ast.nextSibling(then);
+                    ArrayList<Integer> toElse = new ArrayList<>();
+                    condition(condition, false, toElse);
+                    body(then);
+                    if (otherwise == Ast.NONE) {
+                        method.landAll(toElse);
+                    } else {
+                        int toEnd = method.branch(GOTO, 0);
+                        method.landAll(toElse);
+                        body(otherwise);
+                        method.land(toEnd);
+                    }
+                    break;
+                }
+                case WHILE: {
+                    // Test at the bottom, so each time round takes one branch
+                    int condition = ast.firstChild(node);
+                    int toCondition = method.branch(GOTO, 0);
+                    int top = method.code.size;
+                    body(ast.nextSibling(condition));
+                    method.land(toCondition);
+                    ArrayList<Integer> toTop = new ArrayList<>();
+                    condition(condition, true, toTop);
+                    for (int branch : toTop) method.patch(branch, top);
+                    break;
+                }
+                case PRINT: {
+                    int expression = ast.firstChild(node);
+                    method.op(ALOAD_0, 1);
+                    expression(expression);
+                    boolean bool = checker.type(expression) == TypeChecker.Type.BOOL;
+                    method.invoke(INVOKEVIRTUAL, methodConstant(OUTPUT, bool ? "printBool" : "printInt", bool ? "(Z)V" : "(I)V"), -2);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("not a statement: " + ast.kind(node));
+            }
+        }
+
+        // Push the value of an expression
+        private void expression(int node) {
+            switch (ast.kind(node)) {
+                case NUMBER:
+                case BOOLEAN:
+                    method.pushInt(ast.value(node));
+                    break;
+                case NAME:
+                    method.load(method.local(checker.slot(node)));
+                    break;
+                case UNARY:
+                    expression(ast.firstChild(node));
+                    if (ast.operator(node) == TokenKind.NOT) {
+                        method.pushInt(1);
+                        method.op(IXOR, -1);
+                    } else {
+                        method.op(INEG, 0);
+                    }
+                    break;
+                case BINARY: {
+                    TokenKind operator = ast.operator(node);
+                    if (compare(operator) != 0 || operator == TokenKind.AND || operator == TokenKind.OR) {
+                        // 1 or 0 from branches
+                        ArrayList<Integer> toFalse = new ArrayList<>();
+                        condition(node, false, toFalse);
+                        method.pushInt(1);
+                        int toEnd = method.branch(GOTO, 0);
+                        method.landAll(toFalse);
+                        method.depth--;
+                        method.pushInt(0);
+                        method.land(toEnd);
+                        break;
+                    }
+                    int left = ast.firstChild(node);
+                    expression(left);
+                    expression(ast.nextSibling(left));
+                    switch (operator) {
+                        case PLUS: method.op(IADD, -1); break;
+                        case MINUS: method.op(ISUB, -1); break;
+                        case TIMES: method.op(IMUL, -1); break;
+                        case DIVIDE:
+                        case MOD: {
+                            // Throw a RuntimeError with the position rather than an ArithmeticException
+                            method.op(DUP, 1);
+                            int nonZero = method.branch(IFNE, -1);
+                            method.pushInt(ast.line(node));
+                            method.pushInt(ast.column(node));
+                            method.invoke(INVOKESTATIC, methodConstant(OUTPUT, "divisionByZero", "(II)Lparsing/Parsing$RuntimeError;"), -1);
+                            method.op(ATHROW, -1);
+                            method.land(nonZero);
+                            method.op(operator == TokenKind.DIVIDE ? IDIV : IREM, -1);
+                            break;
+                        }
+                        default: throw new IllegalStateException("not a binary operator: " + operator);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("not an expression: " + ast.kind(node));
+            }
+        }
+
+        // Branch when a bool expression is jumpIf, adding the branches to be pointed later to branches;
+        // and, or and not are turned into branches rather than values
+        private void condition(int node, boolean jumpIf, List<Integer> branches) {
+            Ast.NodeKind kind = ast.kind(node);
+            if (kind == Ast.NodeKind.BOOLEAN) {
+                if ((ast.value(node) != 0) == jumpIf) branches.add(method.branch(GOTO, 0));
+                return;
+            }
+            if (kind == Ast.NodeKind.UNARY && ast.operator(node) == TokenKind.NOT) {
+                condition(ast.firstChild(node), !jumpIf, branches);
+                return;
+            }
+            if (kind == Ast.NodeKind.BINARY) {
+                TokenKind operator = ast.operator(node);
+                int left = ast.firstChild(node);
+                int right = ast.nextSibling(left);
+                if (operator == TokenKind.AND || operator == TokenKind.OR) {
+                    if ((operator == TokenKind.AND) != jumpIf) {
+                        // a and b is false if either is; a or b is true if either is
+                        condition(left, jumpIf, branches);
+                        condition(right, jumpIf, branches);
+                    } else {
+                        ArrayList<Integer> skip = new ArrayList<>();
+                        condition(left, !jumpIf, skip);
+                        condition(right, jumpIf, branches);
+                        method.landAll(skip);
+                    }
+                    return;
+                }
+                int compare = compare(operator);
+                if (compare != 0) {
+                    expression(left);
+                    expression(right);
+                    branches.add(method.branch(jumpIf ? compare : negate(compare), -2));
+                    return;
+                }
+            }
+            expression(node);
+            branches.add(method.branch(jumpIf ? IFNE : IFEQ, -1));
+        }
+
+        // The if_icmp opcode of a relational operator, 0 for others
+        private static int compare(TokenKind operator) {
+            switch (operator) {
+                case EQUAL: return IF_ICMPEQ;
+                case NOT_EQUAL: return IF_ICMPNE;
+                case LESS: return IF_ICMPLT;
+                case LESS_EQUAL: return IF_ICMPLE;
+                case GREATER_EQUAL: return IF_ICMPGE;
+                case GREATER: return IF_ICMPGT;
+                default: return 0;
+            }
+        }
+
+        private static int negate(int compare) {
+            switch (compare) {
+                case IF_ICMPEQ: return IF_ICMPNE;
+                case IF_ICMPNE: return IF_ICMPEQ;
+                case IF_ICMPLT: return IF_ICMPGE;
+                case IF_ICMPGE: return IF_ICMPLT;
+                case IF_ICMPGT: return IF_ICMPLE;
+                default: return IF_ICMPGT; // IF_ICMPLE
+            }
+        }
+
+        // Constant pool entries, each added once
+
+        private int utf8(String text) {
+            Integer index = poolIndex.get("U" + text);
+            if (index != null) return index;
+            pool.u1(1).u2(text.length()).bytes(text.getBytes(StandardCharsets.ISO_8859_1), text.length()); // names are ASCII
+            return add("U" + text);
+        }
+
+        private int intConstant(int value) {
+            Integer index = poolIndex.get("I" + value);
+            if (index != null) return index;
+            pool.u1(3).u4(value);
+            return add("I" + value);
+        }
+
+        private int classConstant(String name) {
+            Integer index = poolIndex.get("C" + name);
+            if (index != null) return index;
+            int nameIndex = utf8(name);
+            pool.u1(7).u2(nameIndex);
+            return add("C" + name);
+        }
+
+        private int methodConstant(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = poolIndex.get(key);
+            if (index != null) return index;
+            int ownerIndex = classConstant(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            pool.u1(12).u2(nameIndex).u2(descriptorIndex);
+            int nameAndType = add("N" + key);
+            pool.u1(10).u2(ownerIndex).u2(nameAndType);
+            return add(key);
+        }
+
+        private int add(String key) {
+            poolIndex.put(key, poolCount);
+            return poolCount++;
+        }
+
+        // Growable big-endian byte array
+        private static final class Bytes {
+            byte[] data = new byte[256];
+            int size;
+
+            Bytes u1(int value) {
+                if (size == data.length) data = Arrays.copyOf(data, size * 2);
+                data[size++] = (byte) value;
+                return this;
+            }
+
+            Bytes u2(int value) {
+                return u1(value >>> 8).u1(value);
+            }
+
+            Bytes u4(int value) {
+                return u2(value >>> 16).u2(value);
+            }
+
+            Bytes bytes(byte[] bytes, int length) {
+                if (size + length > data.length) data = Arrays.copyOf(data, Math.max(size + length, size * 2));
+                System.arraycopy(bytes, 0, data, size, length);
+                size += length;
+                return this;
+            }
+        }
+
+        // A method being compiled: its code without the prologue and epilogue, the depth of its stack,
+        // and the frame slots it uses, in the order of their locals from 2 on (0 is the output, 1 the
+        // frame)
+        private final class Method {
+            final String name;
+            final Bytes code = new Bytes();
+            final ArrayList<Integer> slots = new ArrayList<>();
+            final HashMap<Integer, Integer> locals = new HashMap<>(); // by slot
+            int depth;
+            int maxStack;
+
+            Method(String name) {
+                this.name = name;
+            }
+
+            // The local of a frame slot
+            int local(int slot) {
+                Integer local = locals.get(slot);
+                if (local == null) {
+                    local = slots.size() + 2;
+                    locals.put(slot, local);
+                    slots.add(slot);
+                }
+                return local;
+            }
+
+            void op(int opcode, int effect) {
+                code.u1(opcode);
+                stack(effect);
+            }
+
+            void stack(int effect) {
+                depth += effect;
+                maxStack = Math.max(maxStack, depth);
+            }
+
+            void pushInt(int value) {
+                pushInt(code, value);
+                stack(1);
+            }
+
+            void load(int local) {
+                local(code, ILOAD, local);
+                stack(1);
+            }
+
+            void store(int local) {
+                local(code, ISTORE, local);
+                stack(-1);
+            }
+
+            void invoke(int opcode, int method, int effect) {
+                code.u1(opcode).u2(method);
+                stack(effect);
+            }
+
+            // Emit a branch to be pointed later with land or patch; returns where it is
+            int branch(int opcode, int effect) {
+                int at = code.size;
+                code.u1(opcode).u2(0);
+                stack(effect);
+                return at;
+            }
+
+            // Point a branch at the next instruction
+            void land(int branch) {
+                patch(branch, code.size);
+            }
+
+            void landAll(List<Integer> branches) {
+                for (int branch : branches) land(branch);
+            }
+
+            void patch(int branch, int target) {
+                int offset = target - branch;
+                code.data[branch + 1] = (byte) (offset >> 8);
+                code.data[branch + 2] = (byte) offset;
+            }
+
+            // The code with the prologue loading the slots used from the frame, and the epilogue
+            // storing them back
+            byte[] code() {
+                Bytes all = new Bytes();
+                for (int i = 0; i < slots.size(); i++) {
+                    all.u1(ALOAD_1);
+                    pushInt(all, slots.get(i));
+                    all.u1(IALOAD);
+                    local(all, ISTORE, i + 2);
+                }
+                all.bytes(code.data, code.size);
+                for (int i = 0; i < slots.size(); i++) {
+                    all.u1(ALOAD_1);
+                    pushInt(all, slots.get(i));
+                    local(all, ILOAD, i + 2);
+                    all.u1(IASTORE);
+                }
+                all.u1(RETURN);
+                return Arrays.copyOf(all.data, all.size);
+            }
+
+            private void pushInt(Bytes to, int value) {
+                if (value >= -1 && value <= 5) {
+                    to.u1(ICONST_0 + value);
+                } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                    to.u1(BIPUSH).u1(value);
+                } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                    to.u1(SIPUSH).u2(value);
+                } else {
+                    int index = intConstant(value);
+                    if (index < 256) to.u1(LDC).u1(index);
+                    else to.u1(LDC_W).u2(index);
+                }
+            }
+
+            private void local(Bytes to, int opcode, int local) {
+                if (local < 256) to.u1(opcode).u1(local);
+                else to.u1(WIDE).u1(opcode).u2(local);
+            }
+        }
+    }
+
+    // Inner class the code generated by JvmCompiler prints through, buffered like the Interpreter
+    public static final class JitOutput {
+        private static final int OUTPUT_BUFFER = 8192; // chars held back before writing out
+
+        private final Writer out;
+        private final StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER + 64);
+
+        JitOutput(Writer out) {
+            this.out = out;
+        }
+
+        public void printInt(int value) throws IOException {
+            buffer.append(value).append('\n');
+            if (buffer.length() >= OUTPUT_BUFFER) flush();
+        }
+
+        public void printBool(boolean value) throws IOException {
+            buffer.append(value).append('\n');
+            if (buffer.length() >= OUTPUT_BUFFER) flush();
+        }
+
+        public static RuntimeError divisionByZero(int line, int column) {
+            return new RuntimeError("division by zero", line + ":" + column);
+        }
+
+        void flush() throws IOException {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+    }
+
+    // Inner class holding a program compiled by JvmCompiler, ready to run
+    public static class JitProgram {
+        private final MethodHandle run;
+        private final int frameSize;
+
+        JitProgram(MethodHandle run, int frameSize) {
+            this.run = run;
+            this.frameSize = frameSize;
+        }
+
+        // Run the program, writing what it prints to out; throws RuntimeError on division by zero
+        public void run(Writer out) throws IOException {
+            JitOutput output = new JitOutput(out);
+            try {
+                run.invokeExact(output, new int[frameSize]);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e); // the generated code throws nothing else
+            } finally {
+                output.flush();
+                out.flush();
+            }
+        }
+    }
+
+    // Inner class keeping the tokens and syntax tree of a program while it is edited, for an editor
+    // that checks it on every keystroke, so an edit is lexed and parsed again only around where it is
+    // rather than in the whole program. An edit is lexed again from the start of its line until a token on a later
+    // line starts where one did before: no token or comment spans a new line, so from there on the
+    // tokens are the ones before the edit, moved. Then only the statements around the tokens that
+    // changed are parsed again, into the innermost body around them. If they do not end where they
+    // did, in the same state, the if or while statement around that body is parsed again instead,
+    // and so on up to the whole program, so the tree and errors are always those of parsing the
+    // whole text. What comes after the edit is still moved: the text, and the token and node arrays,
+    // which are located by offset, are shifted in passes that take time in proportion to the size of
+    // the program, though far less than lexing and parsing it would; lines are only counted for
+    // messages.
+    public static class IncrementalParser {
+        private byte[] text;
+        private int length; // bytes of text in use
+        private final TokenBuffer tokens = new TokenBuffer();
+        private final TokenBuffer relexed = new TokenBuffer(); // tokens of the lines an edit lexed again
+        private final ArrayList<LexicalError> lexicalErrors = new ArrayList<>(); // in the order of the text
+        private BufferTokenSource source;
+        private Parsing parsing;
+        private int parsedNodes; // nodes of the tree when the whole program was last parsed
+        private int reparsed; // tokens the last edit parsed again
+        private static final int MAX_DISCARDED_NODES = 1 << 16; // beyond parsedNodes, before parsing the whole program again
+
+        // Lexical error at a byte of the text
+        private static class LexicalError {
+            int offset;
+            final String message;
+
+            LexicalError(int offset, String message) {
+                this.offset = offset;
+                this.message = message;
+            }
+        }
+
+        public IncrementalParser(String program) {
+            text = program.getBytes(StandardCharsets.ISO_8859_1);
+            length = text.length;
+            lexer(0, lexicalErrors).tokenize(tokens);
+            tokens.setSource(ByteBuffer.wrap(text, 0, length));
+            parse();
+        }
+
+        // Replace the removed bytes at offset by inserted, then lex and parse again what that changed
+        public void edit(int offset, int removed, String inserted) {
+            if (offset < 0 || removed < 0 || offset + removed > length)
+                throw new IndexOutOfBoundsException("Edit of " + removed + " bytes at " + offset + " of " + length);
+            byte[] insert = inserted.getBytes(StandardCharsets.ISO_8859_1);
+            int delta = insert.length - removed;
+            if (length + delta > text.length) text = Arrays.copyOf(text, Math.max(2 * text.length, length + delta));
+            System.arraycopy(text, offset + removed, text, offset + insert.length, length - offset - removed);
+            System.arraycopy(insert, 0, text, offset, insert.length);
+            length += delta;
+            tokens.setSource(ByteBuffer.wrap(text, 0, length));
+            parsing.ast.setLines(tokens.lines());
+
+            // Lex again from the start of the line of the edit, until a token on a line after it
+            // starts where one did before the edit; end is that old token
+            int lineStart = offset;
+            while (lineStart > 0 && text[lineStart - 1] != '\n') lineStart--;
+            int first = tokenAt(lineStart);
+            int lineEnd = offset + insert.length; // the new line ending the last line of the edit
+            while (lineEnd < length && text[lineEnd] != '\n') lineEnd++;
+            ArrayList<LexicalError> errors = new ArrayList<>();
+            LexicalAnalyzer lexer = lexer(lineStart, errors);
+            relexed.clear();
+            int end = first;
+            while (true) {
+                lexer.next();
+                TokenKind kind = lexer.tokenKind();
+                int start = lineStart + lexer.tokenStart();
+                if (kind == TokenKind.END_OF_FILE) {
+                    end = tokens.size();
+                } else if (start > lineEnd) {
+                    int oldStart = start - delta;
+                    while (tokens.start(end) < oldStart) end++; // stops at the end of file token at the latest
+                    if (tokens.start(end) == oldStart && tokens.kind(end) == kind && tokens.end(end) == oldStart + lexer.tokenLength()) {
+                        // An error in that token is one of the old ones
+                        while (!errors.isEmpty() && errors.get(errors.size() - 1).offset >= start) errors.remove(errors.size() - 1);
+                        break;
+                    }
+                }
+                relexed.add(kind, start, start + lexer.tokenLength(), lexer.hasValue() ? lexer.numValue() : 0);
+                if (kind == TokenKind.END_OF_FILE) break;
+            }
+
+            // Lexical errors in the lines lexed again are replaced, the ones after them moved
+            int from = 0;
+            while (from < lexicalErrors.size() && lexicalErrors.get(from).offset < lineStart) from++;
+            int to = from;
+            while (to < lexicalErrors.size() && (end == tokens.size() || lexicalErrors.get(to).offset < tokens.start(end))) to++;
+            for (int i = to; i < lexicalErrors.size(); i++) {
+                lexicalErrors.get(i).offset += delta;
+            }
+            lexicalErrors.subList(from, to).clear();
+            lexicalErrors.addAll(from, errors);
+
+            // Tokens lexed again the same at either end need not be parsed again: the tokens that
+            // changed are [changed, changedEnd) before the edit, and added more after it
+            int count = relexed.size();
+            int same = 0;
+            while (same < count && first + same < end && tokens.end(first + same) <= offset && same(first + same, same, 0)) same++;
+            int sameAfter = 0;
+            while (sameAfter < count - same && end - sameAfter > first + same && tokens.start(end - 1 - sameAfter) >= offset + removed
+                    && same(end - 1 - sameAfter, count - 1 - sameAfter, delta)) sameAfter++;
+            int changed = first + same;
+            int changedEnd = end - sameAfter;
+            int added = count - (end - first);
+            long moved = changedEnd < tokens.size() ? tokens.start(changedEnd) : Long.MAX_VALUE; // of the first node after them
+            tokens.replace(first, end, relexed);
+            if (delta != 0) tokens.shift(first + count, delta);
+
+            reparsed = 0;
+            if (parsing.diagnostics.size() >= parsing.maxErrors) {
+                parse(); // it stopped at too many errors
+            } else {
+                int[] runs = runs(changed, changedEnd);
+                move(changedEnd, added, moved, delta);
+                if (changedEnd > changed || added > 0) reparse(runs);
+                if (parsing.ast.size() > parsedNodes + MAX_DISCARDED_NODES) parse(); // to drop the nodes replaced
+            }
+        }
+
+        public String getText() {
+            return new String(text, 0, length, StandardCharsets.ISO_8859_1);
+        }
+
+        public TokenBuffer getTokens() {
+            return tokens;
+        }
+
+        // Syntax tree of the whole text; only partly built where there are syntax errors
+        public Ast getAst() {
+            return parsing.ast;
+        }
+
+        // Lexical errors, then syntax errors, as Parsing.check() reports them
+        public List<String> getDiagnostics() {
+            ArrayList<String> messages = new ArrayList<>();
+            for (LexicalError error : lexicalErrors) {
+                messages.add(tokens.lines().position(error.offset) + "\t>>>>>> " + error.message);
+            }
+            Spans spans = parsing.spans;
+            for (int i = 0; i < parsing.diagnostics.size(); i++) {
+                // The position in a message is from when it was reported, so it is made again
+                String message = parsing.diagnostics.get(i);
+                int position = message.lastIndexOf(" Position: ");
+                if (i < spans.errors && spans.errorTokens[i] < tokens.size() && position >= 0)
+                    message = message.substring(0, position) + " Position: " + tokens.position(spans.errorTokens[i]);
+                messages.add(message);
+            }
+            return messages;
+        }
+
+        public boolean passed() {
+            return lexicalErrors.isEmpty() && parsing.diagnostics.isEmpty();
+        }
+
+        // Tokens the last edit parsed again, all of them when it parsed the whole program
+        public int getReparsed() {
+            return reparsed;
+        }
+
+        // Parse the whole program
+        private void parse() {
+            source = new BufferTokenSource(tokens);
+            parsing = new Parsing(source);
+            parsing.spans = new Spans(source, tokens.size());
+            parsing.parse();
+            parsedNodes = parsing.ast.size();
+            reparsed = tokens.size();
+        }
+
+        // Runs of statements to parse again for the tokens [changed, changedEnd) that changed, from
+        // the body of the program in to the innermost body around them, as their body, first and last
+        // statement. A run starts before the changed tokens, as what is parsed before it looks at its
+        // first token, and ends at or after the token after them.
+        private int[] runs(int changed, int changedEnd) {
+            Ast ast = parsing.ast;
+            Spans spans = parsing.spans;
+            int[] runs = new int[16];
+            int count = 0;
+            int body = ast.root() == Ast.NONE ? Ast.NONE : ast.firstChild(ast.root());
+            while (body != Ast.NONE && spans.firstTokens[body] <= changed && changedEnd <= spans.endTokens[body]) {
+                // The children touching the changed tokens or the token after them, with the one
+                // before or after them if they do not start before or end after them
+                int first = Ast.NONE;
+                int last = Ast.NONE;
+                int before = Ast.NONE;
+                for (int child = ast.firstChild(body); child != Ast.NONE && spans.firstTokens[child] <= changedEnd; child = ast.nextSibling(child)) {
+                    if (spans.endTokens[child] < changed) {
+                        before = child;
+                    } else {
+                        if (first == Ast.NONE) first = child;
+                        last = child;
+                    }
+                }
+                if (first != Ast.NONE && spans.firstTokens[first] >= changed) first = before;
+                if (last != Ast.NONE && spans.endTokens[last] < changedEnd) last = ast.nextSibling(last);
+                if (first == Ast.NONE || last == Ast.NONE) break;
+                for (int child = first; ; child = ast.nextSibling(child)) {
+                    if (ast.kind(child) == Ast.NodeKind.DECLARATION) return Arrays.copyOf(runs, count);
+                    if (child == last) break;
+                }
+                if (count + 3 > runs.length) runs = Arrays.copyOf(runs, 2 * runs.length);
+                runs[count++] = body;
+                runs[count++] = first;
+                runs[count++] = last;
+
+                // On into the body of an if or while statement around the changed tokens
+                int inner = Ast.NONE;
+                if (first == last && (ast.kind(first) == Ast.NodeKind.IF || ast.kind(first) == Ast.NodeKind.WHILE)) {
+                    for (int child = ast.firstChild(first); child != Ast.NONE; child = ast.nextSibling(child)) {
+                        if (ast.kind(child) == Ast.NodeKind.BODY && spans.firstTokens[child] <= changed && changedEnd <= spans.endTokens[child])
+                            inner = child;
+                    }
+                }
+                body = inner;
+            }
+            return Arrays.copyOf(runs, count);
+        }
+
+        // Child of parent before child, NONE for its first child
+        private int previous(int parent, int child) {
+            int previous = Ast.NONE;
+            for (int c = parsing.ast.firstChild(parent); c != child; c = parsing.ast.nextSibling(c)) previous = c;
+            return previous;
+        }
+
+        // Move what comes after the changed tokens: tokens from changedEnd on, as nodes and errors
+        // point to them, by added, and nodes located from moved on by offsets bytes
+        private void move(int changedEnd, int added, long moved, int offsets) {
+            Spans spans = parsing.spans;
+            if (added != 0) {
+                for (int node = 0, n = Math.min(parsing.ast.size(), spans.firstTokens.length); node < n; node++) {
+                    if (spans.firstTokens[node] >= changedEnd) spans.firstTokens[node] += added;
+                    if (spans.endTokens[node] >= changedEnd) spans.endTokens[node] += added;
+                }
+                for (int i = 0; i < spans.errors; i++) {
+                    if (spans.errorTokens[i] >= changedEnd) spans.errorTokens[i] += added;
+                }
+            }
+            if (offsets != 0) parsing.ast.shift(moved, offsets);
+        }
+
+        // Parse the runs again, from the innermost one out until one ends where it did, else the
+        // whole program
+        private void reparse(int[] runs) {
+            for (int i = runs.length - 3; i >= 0; i -= 3) {
+                if (reparse(runs[i], runs[i + 1], runs[i + 2])) return;
+            }
+            parse();
+        }
+
+        // Parse the statements first to last of body again and put the new ones in their place; false
+        // if they do not end at the same token in the same state as before, when the parse goes on
+        // differently after them
+        private boolean reparse(int body, int first, int last) {
+            Ast ast = parsing.ast;
+            Spans spans = parsing.spans;
+            ArrayList<String> diagnostics = parsing.diagnostics;
+            int from = spans.firstTokens[first];
+            int to = spans.endTokens[last];
+            int nodes = ast.size();
+            int errors = diagnostics.size();
+            source.seek(from);
+            parsing.recovering = spans.startRecovering[first];
+            int run;
+            try {
+                run = parsing.statements(spans.follows[body], to);
+            } catch (SyntaxError e) {
+                run = Ast.NONE; // too many errors
+            }
+            reparsed += source.index() - from;
+            if (run == Ast.NONE || source.index() != to || parsing.recovering != spans.endRecovering[last]) {
+                diagnostics.subList(errors, diagnostics.size()).clear();
+                spans.errors = errors;
+                parsing.bodyDepth = 0;
+                parsing.expressionDepth = 0;
+                parsing.factorDepth = 0;
+                parsing.prefixDepth = 0;
+                return false;
+            }
+
+            // The new statements in place of the old ones
+            int previous = previous(body, first);
+            int next = ast.nextSibling(last);
+            int head = ast.firstChild(run) != Ast.NONE ? ast.firstChild(run) : next;
+            if (previous == Ast.NONE) ast.setFirstChild(body, head);
+            else ast.setNextSibling(previous, head);
+            for (int statement = ast.firstChild(run); statement != Ast.NONE; statement = ast.nextSibling(statement)) {
+                if (ast.nextSibling(statement) == Ast.NONE) {
+                    ast.setNextSibling(statement, next);
+                    break;
+                }
+            }
+
+            // Their errors in place of the old ones, which moves the errors of the nodes after them
+            int oldFirst = spans.firstErrors[first];
+            int oldEnd = spans.endErrors[last];
+            int found = diagnostics.size() - errors;
+            if (found > 0 || oldEnd > oldFirst) {
+                ArrayList<String> messages = new ArrayList<>(diagnostics.subList(errors, diagnostics.size()));
+                int[] messageTokens = Arrays.copyOfRange(spans.errorTokens, errors, errors + found);
+                diagnostics.subList(errors, diagnostics.size()).clear();
+                diagnostics.subList(oldFirst, oldEnd).clear();
+                diagnostics.addAll(oldFirst, messages);
+                spans.errors = errors;
+                spans.replaceErrors(oldFirst, oldEnd, messageTokens);
+            }
+            int moved = found - (oldEnd - oldFirst);
+            if (moved != 0) {
+                for (int node = 0, n = Math.min(nodes, spans.firstTokens.length); node < n; node++) {
+                    if (spans.firstTokens[node] >= to) spans.firstErrors[node] += moved;
+                    if (spans.endTokens[node] >= to) spans.endErrors[node] += moved;
+                }
+            }
+            for (int node = nodes, n = Math.min(ast.size(), spans.firstTokens.length); node < n; node++) {
+                spans.firstErrors[node] += oldFirst - errors; // they were counted after the old errors
+                spans.endErrors[node] += oldFirst - errors;
+            }
+            return true;
+        }
+
+        // Index of the first token starting at or after offset
+        private int tokenAt(int offset) {
+            int low = 0;
+            int high = tokens.size() - 1; // the end of file token starts after every other
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (tokens.start(middle) < offset) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        // Whether token i is the token j lexed again, moved by offsets bytes
+        private boolean same(int i, int j, int offsets) {
+            return tokens.kind(i) == relexed.kind(j) && tokens.start(i) + offsets == relexed.start(j)
+                    && tokens.end(i) + offsets == relexed.end(j) && tokens.numValue(i) == relexed.numValue(j);
+        }
+
+        // A lexer for text from offset on, which is the start of a line; its errors go to errors
+        private LexicalAnalyzer lexer(int offset, List<LexicalError> errors) {
+            LexicalAnalyzer lexer = new LexicalAnalyzer();
+            lexer.setErrorHandler((line, column, message) -> errors.add(new LexicalError(offset + lexer.tokenStart(), message)));
+            lexer.input(ByteBuffer.wrap(text, offset, length - offset).slice());
+            return lexer;
+        }
+    }
+
+    // Where the statements, declarations and bodies of a tree are in its tokens, recorded while
+    // parsing for an IncrementalParser. Per node: its first token and the token after it, the range
+    // of the syntax errors reported while it was parsed, the recovering count before and after it,
+    // and the follow set it was parsed with; -1 as the first token of the other nodes. Per syntax
+    // error, the token it was reported at.
+    private static final class Spans {
+        private final BufferTokenSource source;
+        private int[] firstTokens = new int[0];
+        private int[] endTokens = new int[0];
+        private int[] firstErrors = new int[0];
+        private int[] endErrors = new int[0];
+        private int[] startRecovering = new int[0];
+        private int[] endRecovering = new int[0];
+        private long[] follows = new long[0];
+        private int[] errorTokens = new int[16];
+        private int errors; // syntax errors in errorTokens
+
+        // For about the given number of nodes
+        Spans(BufferTokenSource source, int nodes) {
+            this.source = source;
+            grow(nodes);
+        }
+
+        // The token being parsed
+        int index() {
+            return source.index();
+        }
+
+        void open(int node, long follow, int errors, int recovering) {
+            if (node >= firstTokens.length) grow(node + 1);
+            firstTokens[node] = source.index();
+            endTokens[node] = -1;
+            firstErrors[node] = errors;
+            startRecovering[node] = recovering;
+            follows[node] = follow;
+        }
+
+        void close(int node, int errors, int recovering) {
+            endTokens[node] = source.index();
+            endErrors[node] = errors;
+            endRecovering[node] = recovering;
+        }
+
+        void error(int token) {
+            if (errors == errorTokens.length) errorTokens = Arrays.copyOf(errorTokens, 2 * errors);
+            errorTokens[errors++] = token;
+        }
+
+        // Replace the tokens of errors [from, to) by with
+        void replaceErrors(int from, int to, int[] with) {
+            int count = errors - (to - from) + with.length;
+            if (count > errorTokens.length) errorTokens = Arrays.copyOf(errorTokens, Math.max(count, 2 * errorTokens.length));
+            System.arraycopy(errorTokens, to, errorTokens, from + with.length, errors - to);
+            System.arraycopy(with, 0, errorTokens, from, with.length);
+            errors = count;
+        }
+
+        private void grow(int nodes) {
+            int length = firstTokens.length;
+            int capacity = Math.max(nodes, Math.max(256, 2 * length));
+            firstTokens = Arrays.copyOf(firstTokens, capacity);
+            Arrays.fill(firstTokens, length, capacity, -1);
+            endTokens = Arrays.copyOf(endTokens, capacity);
+            Arrays.fill(endTokens, length, capacity, -1);
+            firstErrors = Arrays.copyOf(firstErrors, capacity);
+            endErrors = Arrays.copyOf(endErrors, capacity);
+            startRecovering = Arrays.copyOf(startRecovering, capacity);
+            endRecovering = Arrays.copyOf(endRecovering, capacity);
+            follows = Arrays.copyOf(follows, capacity);
+        }
+    }
+
+    // Exception ending a run at an error only found when running, such as division by zero
+    public static class RuntimeError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RuntimeError(String message, String position) {
+            super("Runtime error: " + message + " Position: " + position);
+        }
+    }
+
+    // Exception ending a parse at a syntax error
+    public static class SyntaxError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public SyntaxError(String message) {
+            super(message);
+        }
+    }
+
+    // Parsing class
+    private TokenSource tokens;
+    private final Names names = new Names(); // names in the program, by id
+    private final Ast ast = new Ast(names); // built by parse()
+    private Trace trace = Trace.OFF; // what to trace, see Trace
+    private final ArrayList<String> diagnostics = new ArrayList<>(); // syntax errors, in the order found
+    private int maxErrors = 100; // give up after this many syntax errors
+    private int recovering; // tokens left to match after an error before errors are reported again
+    private static final int RECOVERY_TOKENS = 3;
+    private Spans spans; // where the nodes and errors are in the tokens, only for an IncrementalParser
+    private int stop = NO_STOP; // token to parse statements up to again, see statements()
+    private static final int NO_STOP = Integer.MAX_VALUE;
+
+    // Bodies of nested if and while statements being parsed, innermost on top, see body()
+    private int bodyDepth;
+    private int[] bodyNodes = new int[16];
+    private int[] bodyLasts = new int[16]; // last child so far
+    private long[] bodyFollows = new long[16];
+    private boolean[] bodyStarted = new boolean[16]; // parsing its statements
+    private int[] bodyOwners = new int[16]; // the statement it is part of
+    private int[] bodyOwnerLasts = new int[16];
+    private long[] bodyStatementFollows = new long[16]; // follow set of that statement
+    private int[] bodyRoles = new int[16]; // BODY_OF_...
+
+    // Expressions enclosing the parenthesized ones being parsed, innermost on top, with the operators
+    // waiting for their right operand, see climb(): per expression, the prefix stack depth, then
+    // each operator and its left operand in enclosing, and the follow set, then the location of each
+    // operator in enclosingSets
+    private int expressionDepth;
+    private int[] enclosing = new int[16 * ENCLOSING_INTS];
+    private long[] enclosingSets = new long[16 * ENCLOSING_LONGS];
+    private static final int ENCLOSING_INTS = 7;
+    private static final int ENCLOSING_LONGS = 4;
+    private static final int NO_OPERATOR = -1;
+    private int factorDepth; // of the recursive factor() calls
+    private static final int MAX_FACTOR_DEPTH = 256;
+    private int prefixDepth; // unary and mod operators waiting for their operand
+    private int[] prefixes = new int[16];
+    private int maxBodyDepth; // deepest bodyDepth so far
+    private int maxExpressionDepth; // deepest nesting of parentheses and mod operands so far
+
+    // FIRST sets and operator sets, as bit sets over token kinds (see TokenKind.bit()); the follow
+    // sets passed down the parse methods are made from these with |, so nothing is allocated
+    private static final long DECLARATION_FIRST = TokenKind.set(TokenKind.BOOL, TokenKind.INT);
+    private static final long STATEMENT_FIRST = TokenKind.set(TokenKind.ID, TokenKind.IF, TokenKind.WHILE, TokenKind.PRINT);
+    private static final long BODY_FIRST = DECLARATION_FIRST | STATEMENT_FIRST;
+    private static final long EXPRESSION_FIRST = TokenKind.set(TokenKind.ID, TokenKind.NUM, TokenKind.BOOLEAN_LITERAL, TokenKind.LEFT_PAREN,
+            TokenKind.NOT, TokenKind.MINUS, TokenKind.MOD);
+    private static final long RELATIONAL_OPERATORS = TokenKind.set(TokenKind.LESS, TokenKind.LESS_EQUAL, TokenKind.EQUAL,
+            TokenKind.NOT_EQUAL, TokenKind.GREATER_EQUAL, TokenKind.GREATER);
+    private static final long ADDITIVE_OPERATORS = TokenKind.set(TokenKind.PLUS, TokenKind.MINUS, TokenKind.OR);
+    private static final long MULTIPLICATIVE_OPERATORS = TokenKind.set(TokenKind.TIMES, TokenKind.DIVIDE, TokenKind.MOD, TokenKind.AND);
+    private static final long UNARY_OPERATORS = TokenKind.set(TokenKind.MINUS, TokenKind.NOT);
+    private static final long OPERANDS = TokenKind.set(TokenKind.ID, TokenKind.NUM, TokenKind.BOOLEAN_LITERAL);
+
+    public Parsing(TokenSource tokens) {
+        this.tokens = tokens;
+        ast.setLines(tokens.lines());
+    }
+
+    public Parsing(TokenBuffer tokens) {
+        this(new BufferTokenSource(tokens));
+    }
+
+    // Parse the program; false if it has syntax errors, see getDiagnostics()
+    public boolean parse() {
+        try {
+            program();
+        } catch (SyntaxError e) {
+            diagnostics.add(e.getMessage()); // too many errors
+        }
+        return diagnostics.isEmpty();
+    }
+
+    // Syntax tree built by parse(); only partly built where there were syntax errors
+    public Ast getAst() {
+        return ast;
+    }
+
+    // All syntax errors found by parse()
+    public List<String> getDiagnostics() {
+        return diagnostics;
+    }
+
+    // First syntax error found by parse(), null if there was none
+    public String getSyntaxError() {
+        return diagnostics.isEmpty() ? null : diagnostics.get(0);
+    }
+
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    // Deepest nesting of if and while statements parse() reached
+    public int getMaxBodyDepth() {
+        return maxBodyDepth;
+    }
+
+    // Deepest nesting of parentheses and mod operands parse() reached
+    public int getMaxExpressionDepth() {
+        return maxExpressionDepth;
+    }
+
+    // Move to the next token
+    private void getNextToken() {
+        tokens.advance();
+    }
+
+    // Match the expected token; on a mismatch, report it and skip to the expected token or one in follow
+    private void match(TokenKind expectedToken, String methodName, long follow) {
+        TokenKind current = peek();
+        if (current == expectedToken) {
+            if (trace.parse)
+                trace.line("Expected:" + expectedToken.text() + "from method: " + methodName);
+            tokens.advance(); // Move to the next token
+            if (recovering > 0) recovering--;
+            return;
+        }
+        if (expectedToken == TokenKind.PERIOD) {
+            // If the expected token is a period, check if the current token is end-of-file
+            if (current == TokenKind.END_OF_FILE) {
+                // If the current token is end-of-file, it means the program has ended unexpectedly
+                error(".", methodName, follow);
+                return;
+            }
+        }
+        // If the expected token is not a period or the current token is not end-of-file, report a syntax error
+        error(expectedToken.text(), methodName, follow | expectedToken.bit());
+        if (peek() == expectedToken) { // skipped some stray tokens, now we can go on as if nothing happened
+            tokens.advance();
+            if (recovering > 0) recovering--;
+        }
+    }
+
+    // Report a syntax error, then skip tokens until one in follow (or the end of file) so parsing can go on.
+    // Errors found before a few tokens were matched after the last one are not reported, as they are
+    // usually caused by it.
+    private void error(String expectedToken, String methodName, long follow) {
+        if (recovering == 0) {
+            String message = errorMessage(expectedToken, methodName);
+            if (trace.errors)
+                trace.line(message);
+            diagnostics.add(message);
+            if (spans != null) spans.error(spans.index());
+            if (diagnostics.size() >= maxErrors)
+                throw new SyntaxError("Too many syntax errors, stopped after " + maxErrors);
+        } else if (trace.errors) {
+            trace.line("(not reported) " + errorMessage(expectedToken, methodName));
+        }
+        recovering = RECOVERY_TOKENS;
+        follow |= TokenKind.END_OF_FILE.bit();
+        while (peek() != null && (follow & peek().bit()) == 0) {
+            getNextToken();
+        }
+    }
+
+    // Detailed error message with the method name, current token information, and position
+    private String errorMessage(String expectedToken, String methodName) {
+        Token currentToken = peekToken();
+        return "Syntax error expected '" + expectedToken + "'" + "from method: " + methodName +
+                " Is kind: " + (currentToken != null ? currentToken.getKind() : "null") +
+                " Is value: " + (currentToken != null ? currentToken.getValue() : "null") +
+                " Position: " + (currentToken != null ? currentToken.getPosition() : "null");
+    }
+
+    // Parse the program
+    private void program() {
+        long Follow = TokenKind.END_OF_FILE.bit();
+
+        // Skip over any tokens until "program" keyword is found
+        while (peek() != null && peek() != TokenKind.PROGRAM) {
+            getNextToken(); // Move to the next token
+        }
+
+        // Check if "program" keyword is found
+        if (peek() == TokenKind.PROGRAM) {
+            long bodyFollow = TokenKind.PERIOD.bit();
+            long header = BODY_FIRST | bodyFollow;
+            int program = ast.add(Ast.NodeKind.PROGRAM, Ast.NONE, tokens.location()); // no name until one is matched
+            ast.setRoot(program);
+            match(TokenKind.PROGRAM, "program", header | TokenKind.set(TokenKind.ID, TokenKind.COLON)); // Match the "program" keyword
+            if (peek() == TokenKind.ID) ast.setValue(program, tokens.name(names));
+            match(TokenKind.ID, "program", header | TokenKind.COLON.bit()); // Match the program identifier
+            match(TokenKind.COLON, "program", header);
+            ast.append(program, Ast.NONE, body(bodyFollow));
+            match(TokenKind.PERIOD, "program", Follow);
+        } else {
+            error("program", "program", Follow); // Report syntax error if "program" keyword is not found
+        }
+    }
+    // Parse the body of the program. Bodies of nested if and while statements are parsed in the
+    // same loop, on an explicit stack of the bodies being parsed, so nesting is not limited by the
+    // thread's stack; the stack holds what the recursive parse methods of the grammar would:
+    //   body       = [declarations] statements
+    //   statements = statement { ";" statement }
+    //   statement  = ID ":=" expression | print expression
+    //              | if expression then body [else body] end | while expression do body end
+    private int body(long follow) {
+        int base = bodyDepth;
+        openBody(follow, Ast.NONE, Ast.NONE, 0, BODY_OF_PROGRAM);
+        return statements(base);
+    }
+
+    // Parse statements again from the current token, for an IncrementalParser: into a new body,
+    // parsed with the follow set of the body they are in, until one of them ends at token stop;
+    // NONE if a statement inside them goes past it
+    private int statements(long follow, int stop) {
+        int base = bodyDepth;
+        this.stop = stop;
+        try {
+            openBody(follow, Ast.NONE, Ast.NONE, 0, BODY_OF_RUN);
+            return statements(base);
+        } finally {
+            this.stop = NO_STOP;
+        }
+    }
+
+    // Parse the statements of the body at base on the stack of bodies, and the bodies of the if and
+    // while statements among them, until it ends; returns it
+    private int statements(int base) {
+        while (true) {
+            int top = bodyDepth - 1;
+            if (bodyStarted[top]) {
+                if (top == base && stop != NO_STOP && spans.index() >= stop) {
+                    bodyDepth--;
+                    return bodyNodes[top];
+                }
+                if (peek() == TokenKind.SEMICOLON || inSet(STATEMENT_FIRST)) {
+                    // A statement right after another one is missing its semicolon
+                    match(TokenKind.SEMICOLON, "statements", bodyFollows[top] | STATEMENT_FIRST);
+                } else {
+                    // The end of the body; go on with the statement it is part of
+                    int body = bodyNodes[top];
+                    closeSpan(body);
+                    bodyDepth--;
+                    if (bodyDepth == base) return body;
+                    int owner = bodyOwners[top];
+                    int ownerLast = ast.append(owner, bodyOwnerLasts[top], body);
+                    long statementFollow = bodyStatementFollows[top];
+                    int role = bodyRoles[top];
+                    if (role == BODY_OF_THEN && peek() == TokenKind.ELSE) {
+                        long blockEnd = statementFollow | TokenKind.set(TokenKind.END, TokenKind.ELSE);
+                        match(TokenKind.ELSE, "statement", blockEnd | BODY_FIRST);
+                        openBody(blockEnd, owner, ownerLast, statementFollow, BODY_OF_ELSE);
+                        continue;
+                    }
+                    match(TokenKind.END, "statement", statementFollow);
+                    closeSpan(owner);
+                    addStatement(owner);
+                    continue;
+                }
+            }
+            if (stop != NO_STOP && spans.index() > stop) {
+                bodyDepth = base;
+                return Ast.NONE;
+            }
+            bodyStarted[top] = true;
+            statement(bodyFollows[top] | TokenKind.SEMICOLON.bit());
+        }
+    }
+
+    // What a body on the stack of bodies being parsed is part of
+    private static final int BODY_OF_PROGRAM = 0;
+    private static final int BODY_OF_THEN = 1;
+    private static final int BODY_OF_ELSE = 2;
+    private static final int BODY_OF_WHILE = 3;
+    private static final int BODY_OF_RUN = 4; // statements parsed again, without declarations
+
+    // Start a body, with its declarations, on the stack of bodies being parsed: it goes into owner
+    // (the if or while statement, NONE for the program) after its child ownerLast, and statementFollow
+    // is the follow set of that statement
+    private void openBody(long follow, int owner, int ownerLast, long statementFollow, int role) {
+        if (bodyDepth == bodyNodes.length) {
+            int capacity = bodyDepth * 2;
+            bodyNodes = Arrays.copyOf(bodyNodes, capacity);
+            bodyLasts = Arrays.copyOf(bodyLasts, capacity);
+            bodyFollows = Arrays.copyOf(bodyFollows, capacity);
+            bodyStarted = Arrays.copyOf(bodyStarted, capacity);
+            bodyOwners = Arrays.copyOf(bodyOwners, capacity);
+            bodyOwnerLasts = Arrays.copyOf(bodyOwnerLasts, capacity);
+            bodyStatementFollows = Arrays.copyOf(bodyStatementFollows, capacity);
+            bodyRoles = Arrays.copyOf(bodyRoles, capacity);
+        }
+        int body = ast.add(Ast.NodeKind.BODY, 0, tokens.location());
+        openSpan(body, follow);
+        int top = bodyDepth++;
+        if (bodyDepth > maxBodyDepth) maxBodyDepth = bodyDepth;
+        bodyNodes[top] = body;
+        bodyFollows[top] = follow;
+        bodyStarted[top] = false;
+        bodyOwners[top] = owner;
+        bodyOwnerLasts[top] = ownerLast;
+        bodyStatementFollows[top] = statementFollow;
+        bodyRoles[top] = role;
+        bodyLasts[top] = role != BODY_OF_RUN && inSet(DECLARATION_FIRST) ? declarations(body, follow | STATEMENT_FIRST) : Ast.NONE;
+    }
+
+    // Record where node starts, for an IncrementalParser; follow is the follow set it is parsed with
+    private void openSpan(int node, long follow) {
+        if (spans != null) spans.open(node, follow, diagnostics.size(), recovering);
+    }
+
+    // Record where node ends
+    private void closeSpan(int node) {
+        if (spans != null) spans.close(node, diagnostics.size(), recovering);
+    }
+
+    // Add a parsed statement to the body on top of the stack
+    private void addStatement(int statement) {
+        int top = bodyDepth - 1;
+        bodyLasts[top] = ast.append(bodyNodes[top], bodyLasts[top], statement);
+    }
+
+    // Parse variable declarations into body; returns the last one
+    private int declarations(int body, long follow) {
+        int last = Ast.NONE;
+        do {
+            last = ast.append(body, last, declaration(follow | DECLARATION_FIRST));
+        } while (inSet(DECLARATION_FIRST));
+        return last;
+    }
+
+    // Parse a single declaration
+    private int declaration(long follow) {
+        long nameFollow = follow | TokenKind.set(TokenKind.SEMICOLON, TokenKind.COMMA);
+        int declaration = Ast.NONE;
+        switch (peek()) {
+            case BOOL:
+            case INT:
+                declaration = ast.add(Ast.NodeKind.DECLARATION, peek().ordinal(), tokens.location());
+                openSpan(declaration, follow);
+                match(peek(), "declaration", nameFollow); // the type, bool or int
+                int last = ast.append(declaration, Ast.NONE, name("declaration", nameFollow));
+                while (peek() == TokenKind.COMMA) {
+                    match(TokenKind.COMMA, "declaration", nameFollow);
+                    last = ast.append(declaration, last, name("declaration", nameFollow));
+                }
+                break;
+        }
+        match(TokenKind.SEMICOLON, "declaration", follow);
+        if (declaration != Ast.NONE) closeSpan(declaration);
+        return declaration;
+    }
+
+    // Parse a single statement into the body on top of the stack; an if or while only up to its
+    // body, which is opened on the stack and finished by body()
+    private void statement(long follow) {
+        switch (peek()) {
+            case ID: {
+                int statement = ast.add(Ast.NodeKind.ASSIGN, 0, tokens.location());
+                openSpan(statement, follow);
+                int target = ast.append(statement, Ast.NONE, name("statement", follow | TokenKind.ASSIGN.bit()));
+                match(TokenKind.ASSIGN, "statement", follow | EXPRESSION_FIRST);
+                ast.append(statement, target, expression(follow));
+                closeSpan(statement);
+                addStatement(statement);
+                break;
+            }
+            case IF: {
+                long blockEnd = follow | TokenKind.set(TokenKind.END, TokenKind.ELSE);
+                int statement = ast.add(Ast.NodeKind.IF, 0, tokens.location());
+                openSpan(statement, follow);
+                match(TokenKind.IF, "statement", follow | EXPRESSION_FIRST);
+                int condition = ast.append(statement, Ast.NONE, expression(follow | TokenKind.THEN.bit()));
+                match(TokenKind.THEN, "statement", blockEnd | BODY_FIRST);
+                openBody(blockEnd, statement, condition, follow, BODY_OF_THEN);
+                break;
+            }
+            case WHILE: {
+                long blockEnd = follow | TokenKind.END.bit();
+                int statement = ast.add(Ast.NodeKind.WHILE, 0, tokens.location());
+                openSpan(statement, follow);
+                match(TokenKind.WHILE, "statement", follow | EXPRESSION_FIRST);
+                int condition = ast.append(statement, Ast.NONE, expression(follow | TokenKind.DO.bit()));
+                match(TokenKind.DO, "statement", blockEnd | BODY_FIRST);
+                openBody(blockEnd, statement, condition, follow, BODY_OF_WHILE);
+                break;
+            }
+            case PRINT: {
+                int statement = ast.add(Ast.NodeKind.PRINT, 0, tokens.location());
+                openSpan(statement, follow);
+                match(TokenKind.PRINT, "statement", follow | EXPRESSION_FIRST);
+                ast.append(statement, Ast.NONE, expression(follow));
+                closeSpan(statement);
+                addStatement(statement);
+                break;
+            }
+            default:
+                // Error handling
+                error("ID or if or while or print", "statement", follow);
+        }
+    }
+
+    // Parse an ID into a NAME node; NONE if there is no ID
+    private int name(String methodName, long follow) {
+        int name = peek() == TokenKind.ID ? ast.add(Ast.NodeKind.NAME, tokens.name(names), tokens.location()) : Ast.NONE;
+        match(TokenKind.ID, methodName, follow);
+        return name;
+    }
+
+    // Parse an expression
+private int expression(long follow) {
+    int left = simpleExpression(follow | RELATIONAL_OPERATORS);
+    if (inSet(RELATIONAL_OPERATORS)) {
+        TokenKind operator = peek();
+        long location = tokens.location();
+        relationalOperator(follow | EXPRESSION_FIRST); // Parse the relational operator
+        left = ast.binary(operator, location, left, simpleExpression(follow));
+    }
+    return left;
+}
+    private void unaryOperator(long follow) {
+        if (inSet(UNARY_OPERATORS)) {
+            match(peek(), "unaryOperator", follow);
+        } else {
+            // Error handling
+            error("UnaryOperator", "unaryOperator", follow);
+        }
+    }
+    
+    // Parse a relational operator
+    private void relationalOperator(long follow) {
+        if (inSet(RELATIONAL_OPERATORS)) {
+            match(peek(), "relationalOperator", follow);
+        } else {
+            // Error handling
+            error("Relational Operator", "relationalOperator", follow);
+        }
+    }
+
+    // Parse a simple expression
+    private int simpleExpression(long follow) {
+        long termFollow = follow | ADDITIVE_OPERATORS;
+        int left = term(termFollow);
+        while (inSet(ADDITIVE_OPERATORS)) {
+            TokenKind operator = peek();
+            long location = tokens.location();
+            match(operator, "simpleExpression", termFollow | EXPRESSION_FIRST);
+            left = ast.binary(operator, location, left, term(termFollow));
+        }
+        return left;
+    }
+
+    // Parse a term
+    private int term(long follow) {
+        long factorFollow = follow | MULTIPLICATIVE_OPERATORS;
+        int left = factor(factorFollow);
+        while (inSet(MULTIPLICATIVE_OPERATORS)) {
+            TokenKind operator = peek();
+            long location = tokens.location();
+            match(operator, "term", factorFollow | EXPRESSION_FIRST);
+            left = ast.binary(operator, location, left, factor(factorFollow));
+        }
+        return left;
+    }
+
+    // Parse a factor; factors nested deeper than MAX_FACTOR_DEPTH, in parentheses or after mod,
+    // are parsed by climb() instead, so the depth is not bounded by the thread's stack
+    private int factor(long follow) {
+        if (factorDepth == MAX_FACTOR_DEPTH) return climb(follow, true);
+        factorDepth++;
+        int unary = Ast.NONE;
+        if (inSet(UNARY_OPERATORS)) {
+            unary = ast.add(Ast.NodeKind.UNARY, peek().ordinal(), tokens.location());
+            unaryOperator(follow | EXPRESSION_FIRST);
+        }
+        int node;
+        switch (peek()) {
+            case LEFT_PAREN:
+                if (factorDepth > maxExpressionDepth) maxExpressionDepth = factorDepth;
+                match(TokenKind.LEFT_PAREN, "factor", follow | EXPRESSION_FIRST);
+                node = expression(follow | TokenKind.RIGHT_PAREN.bit());
+                match(TokenKind.RIGHT_PAREN, "factor", follow);
+                break;
+            case ID:
+                node = ast.add(Ast.NodeKind.NAME, tokens.name(names), tokens.location());
+                match(TokenKind.ID, "factor", follow);
+                break;
+            case NUM:
+                node = ast.add(Ast.NodeKind.NUMBER, tokens.numValue(), tokens.location());
+                match(TokenKind.NUM, "factor", follow);
+                break;
+            case BOOLEAN_LITERAL:
+                node = ast.add(Ast.NodeKind.BOOLEAN, tokens.numValue(), tokens.location());
+                match(TokenKind.BOOLEAN_LITERAL, "factor", follow);
+                break;
+            case MOD:
+                if (factorDepth > maxExpressionDepth) maxExpressionDepth = factorDepth;
+                node = ast.add(Ast.NodeKind.UNARY, TokenKind.MOD.ordinal(), tokens.location());
+                match(TokenKind.MOD, "factor", follow | EXPRESSION_FIRST);
+                ast.append(node, Ast.NONE, factor(follow)); // Recursively parse the factor after the modulus operator
+                break;
+            default:
+                // Error handling
+                node = ast.add(Ast.NodeKind.ERROR, 0, tokens.location());
+                error("ID, NUM, BooleanLiteral, (, or mod", "factor", follow);
+        }
+        factorDepth--;
+        if (unary == Ast.NONE) return node;
+        ast.append(unary, Ast.NONE, node);
+        return unary;
+    }
+
+    // Parse an expression, or only a factor, by precedence climbing over the operator sets of
+    // expression(), simpleExpression() and term(), without recursion. The operators waiting for
+    // their right operand are kept in locals (NO_OPERATOR if none); a parenthesis saves them on an
+    // explicit stack of the enclosing expressions until its expression is complete, and the unary
+    // and mod operators of a factor wait on a stack of their own, so nesting is bounded by the heap.
+    // Errors, follow sets and the order nodes are made in are those of the recursive methods. These
+    // are faster while the nesting is shallow, so they are used up to MAX_FACTOR_DEPTH.
+    private int climb(long follow, boolean factor) {
+        int base = expressionDepth;
+        int prefixBase = prefixDepth; // prefixes below are those of enclosing expressions
+        int relational = NO_OPERATOR; // ordinals of the operators
+        int relationalLeft = Ast.NONE;
+        long relationalLocation = 0;
+        int additive = NO_OPERATOR;
+        int additiveLeft = Ast.NONE;
+        long additiveLocation = 0;
+        int multiplicative = NO_OPERATOR;
+        int multiplicativeLeft = Ast.NONE;
+        long multiplicativeLocation = 0;
+        factors:
+        while (true) {
+            // The operators before a factor, then its operand
+            long factorFollow = factor && expressionDepth == base ? follow
+                    : follow | (relational != NO_OPERATOR ? 0 : RELATIONAL_OPERATORS) | ADDITIVE_OPERATORS | MULTIPLICATIVE_OPERATORS;
+            int operand = inSet(OPERANDS) ? OPERAND : prefixes(factorFollow);
+            if (operand == OPERAND) {
+                TokenKind kind = peek();
+                if (kind == TokenKind.ID) operand = ast.add(Ast.NodeKind.NAME, tokens.name(names), tokens.location());
+                else operand = ast.add(kind == TokenKind.NUM ? Ast.NodeKind.NUMBER : Ast.NodeKind.BOOLEAN, tokens.numValue(), tokens.location());
+                match(kind, "factor", factorFollow);
+            } else if (operand == PARENTHESIS) {
+                int level = expressionDepth++;
+                if (factorDepth + expressionDepth > maxExpressionDepth) maxExpressionDepth = factorDepth + expressionDepth;
+                if (level * ENCLOSING_INTS == enclosing.length) {
+                    enclosing = Arrays.copyOf(enclosing, enclosing.length * 2);
+                    enclosingSets = Arrays.copyOf(enclosingSets, enclosingSets.length * 2);
+                }
+                int at = level * ENCLOSING_INTS;
+                enclosing[at] = prefixBase;
+                enclosing[at + 1] = relational;
+                enclosing[at + 2] = relationalLeft;
+                enclosing[at + 3] = additive;
+                enclosing[at + 4] = additiveLeft;
+                enclosing[at + 5] = multiplicative;
+                enclosing[at + 6] = multiplicativeLeft;
+                at = level * ENCLOSING_LONGS;
+                enclosingSets[at] = follow;
+                enclosingSets[at + 1] = relationalLocation;
+                enclosingSets[at + 2] = additiveLocation;
+                enclosingSets[at + 3] = multiplicativeLocation;
+                follow = factorFollow | TokenKind.RIGHT_PAREN.bit();
+                prefixBase = prefixDepth;
+                relational = NO_OPERATOR;
+                additive = NO_OPERATOR;
+                multiplicative = NO_OPERATOR;
+                continue;
+            }
+
+            // Reduce the operators waiting for the operand, until one needs another factor
+            while (true) {
+                while (prefixDepth > prefixBase) {
+                    int prefix = prefixes[--prefixDepth];
+                    ast.append(prefix, Ast.NONE, operand);
+                    operand = prefix;
+                }
+                if (factor && expressionDepth == base) return operand;
+                if (multiplicative != NO_OPERATOR) {
+                    operand = ast.binary(TokenKind.of(multiplicative), multiplicativeLocation, multiplicativeLeft, operand);
+                    multiplicative = NO_OPERATOR;
+                }
+                long termFollow = follow | (relational != NO_OPERATOR ? 0 : RELATIONAL_OPERATORS) | ADDITIVE_OPERATORS;
+                if (inSet(MULTIPLICATIVE_OPERATORS)) {
+                    TokenKind operator = peek();
+                    multiplicative = operator.ordinal();
+                    multiplicativeLocation = tokens.location();
+                    multiplicativeLeft = operand;
+                    match(operator, "term", termFollow | MULTIPLICATIVE_OPERATORS | EXPRESSION_FIRST);
+                    continue factors;
+                }
+                if (additive != NO_OPERATOR) {
+                    operand = ast.binary(TokenKind.of(additive), additiveLocation, additiveLeft, operand);
+                    additive = NO_OPERATOR;
+                }
+                if (inSet(ADDITIVE_OPERATORS)) {
+                    TokenKind operator = peek();
+                    additive = operator.ordinal();
+                    additiveLocation = tokens.location();
+                    additiveLeft = operand;
+                    match(operator, "simpleExpression", termFollow | EXPRESSION_FIRST);
+                    continue factors;
+                }
+                if (relational != NO_OPERATOR) {
+                    operand = ast.binary(TokenKind.of(relational), relationalLocation, relationalLeft, operand);
+                } else if (inSet(RELATIONAL_OPERATORS)) {
+                    relational = peek().ordinal();
+                    relationalLocation = tokens.location();
+                    relationalLeft = operand;
+                    relationalOperator(follow | EXPRESSION_FIRST);
+                    continue factors;
+                }
+                // The expression is complete; if it was in parentheses, it is the operand of the enclosing one
+                if (expressionDepth == base) return operand;
+                int level = --expressionDepth;
+                int at = level * ENCLOSING_INTS;
+                prefixBase = enclosing[at];
+                relational = enclosing[at + 1];
+                relationalLeft = enclosing[at + 2];
+                additive = enclosing[at + 3];
+                additiveLeft = enclosing[at + 4];
+                multiplicative = enclosing[at + 5];
+                multiplicativeLeft = enclosing[at + 6];
+                at = level * ENCLOSING_LONGS;
+                follow = enclosingSets[at];
+                relationalLocation = enclosingSets[at + 1];
+                additiveLocation = enclosingSets[at + 2];
+                multiplicativeLocation = enclosingSets[at + 3];
+                match(TokenKind.RIGHT_PAREN, "factor", factor && expressionDepth == base ? follow
+                        : follow | (relational != NO_OPERATOR ? 0 : RELATIONAL_OPERATORS) | ADDITIVE_OPERATORS | MULTIPLICATIVE_OPERATORS);
+            }
+        }
+    }
+
+    // Parse the unary and mod operators before the operand of a factor onto the stack of prefixes;
+    // then OPERAND if an ID, number or literal follows, PARENTHESIS if "(" does, which is matched,
+    // and otherwise an ERROR node
+    private int prefixes(long follow) {
+        while (true) {
+            if (inSet(UNARY_OPERATORS)) {
+                pushPrefix(ast.add(Ast.NodeKind.UNARY, peek().ordinal(), tokens.location()));
+                unaryOperator(follow | EXPRESSION_FIRST);
+            }
+            switch (peek()) {
+                case LEFT_PAREN:
+                    match(TokenKind.LEFT_PAREN, "factor", follow | EXPRESSION_FIRST);
+                    return PARENTHESIS;
+                case ID:
+                case NUM:
+                case BOOLEAN_LITERAL:
+                    return OPERAND;
+                case MOD:
+                    // mod applies to the factor after it, which may have operators of its own
+                    pushPrefix(ast.add(Ast.NodeKind.UNARY, TokenKind.MOD.ordinal(), tokens.location()));
+                    match(TokenKind.MOD, "factor", follow | EXPRESSION_FIRST);
+                    break;
+                default:
+                    // Error handling
+                    int operand = ast.add(Ast.NodeKind.ERROR, 0, tokens.location());
+                    error("ID, NUM, BooleanLiteral, (, or mod", "factor", follow);
+                    return operand;
+            }
+        }
+    }
+
+    // What prefixes() found after the operators, other than an ERROR node
+    private static final int OPERAND = -2;
+    private static final int PARENTHESIS = -3;
+
+    // Keep a unary or mod operator until the operand it applies to is parsed
+    private void pushPrefix(int prefix) {
+        if (prefixDepth == prefixes.length) prefixes = Arrays.copyOf(prefixes, prefixDepth * 2);
+        prefixes[prefixDepth++] = prefix;
+    }
+
+    // Check if the next token is in the given set
+    private boolean inSet(long set) {
+        TokenKind kind = peek();
+        return kind != null && (set & kind.bit()) != 0;
+    }
+
+    // Peek at the kind of the next token (null past the end)
+    private TokenKind peek() {
+        return tokens.peek();
+    }
+
+    // Peek at the next token object, only built for messages
+    private Token peekToken() {
+        return tokens.peekToken();
+    }
+
+    // Inner class caching what lexing and parsing a source gives, so a source seen before is neither
+    // lexed nor parsed again: its tokens, its syntax tree and its lexical and syntax errors. Entries
+    // are keyed by a SHA-256 hash of VERSION and the source, and kept in memory up to a number of
+    // bytes, dropping the least recently used first. With a directory, each entry is also saved in a
+    // file named by its key, which is read back when the entry is not in memory, by later runs too.
+    // Safe to use from many threads; the trees of entries must not be changed, see Ast.copy().
+    public static class CheckCache {
+        public static final String EXTENSION = ".pcc"; // of the files in the directory
+        public static final long DEFAULT_MAX_BYTES = 64L << 20;
+        private static final int MAGIC = 0x50434346; // "PCCF"
+        private static final int VERSION = 3; // changed whenever the format, the lexer, the parser or their messages change
+
+        // What lexing and parsing one source gave
+        public static class Entry {
+            private final TokenBuffer tokens; // without their source
+            private final Ast ast; // built as far as the parse went, without its lines
+            private final boolean parsed; // without syntax errors
+            private final List<String> messages; // lexical errors, then syntax errors
+            private final long bytes; // taken in memory, about
+
+            public Entry(TokenBuffer tokens, Ast ast, boolean parsed, List<String> messages) {
+                this.tokens = tokens.withSource(null);
+                this.ast = ast.withLines(null);
+                this.parsed = parsed;
+                this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+                long size = 16L * tokens.size() + 24L * ast.size() + 32L * ast.names().size();
+                for (String message : messages) size += 48 + 2L * message.length();
+                bytes = size;
+            }
+
+            // The tokens, their text read from source, which must be the source the entry was made from
+            public TokenBuffer getTokens(ByteBuffer source) {
+                return tokens.withSource(source);
+            }
+
+            // The tree, with the lines of source, which must be the source the entry was made from
+            public Ast getAst(ByteBuffer source) {
+                return ast.withLines(new LineIndex(source));
+            }
+
+            public boolean parsed() {
+                return parsed;
+            }
+
+            public List<String> getMessages() {
+                return messages;
+            }
+
+            // Bytes the entry takes in memory, about, as counted against maxBytes
+            long bytes() {
+                return bytes;
+            }
+        }
+
+        private final Path directory; // null to keep entries in memory only
+        private final long maxBytes;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // least recently used first
+        private long bytes; // of the entries in memory
+
+        public CheckCache(Path directory, long maxBytes) {
+            this.directory = directory;
+            this.maxBytes = maxBytes;
+        }
+
+        // Key of a source: the hash of VERSION and the source, in hexadecimal
+        public static String key(ByteBuffer source) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(ByteBuffer.allocate(4).putInt(0, VERSION));
+                digest.update(source.duplicate().rewind());
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // every JDK has SHA-256
+            }
+        }
+
+        // The entry of a key, from memory or else from its file; null if there is none
+        public Entry get(String key) {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+            }
+            if (entry == null && directory != null) {
+                entry = load(key);
+                if (entry != null) keep(key, entry);
+            }
+            return entry;
+        }
+
+        // Add the entry of a key, saving it in its file; a failure to save only means the source is
+        // lexed and parsed again by later runs
+        public void put(String key, Entry entry) {
+            keep(key, entry);
+            if (directory == null) return;
+            try {
+                Files.createDirectories(directory);
+                write(entry, file(key));
+            } catch (IOException e) {
+                // not saved
+            }
+        }
+
+        // Keep an entry in memory, unless it takes more than all of it; it is then only in its file
+        private synchronized void keep(String key, Entry entry) {
+            if (entry.bytes > maxBytes) return;
+            Entry old = entries.put(key, entry);
+            if (old != null) bytes -= old.bytes;
+            bytes += entry.bytes;
+            for (Iterator<Entry> least = entries.values().iterator(); bytes > maxBytes; ) {
+                bytes -= least.next().bytes;
+                least.remove();
+            }
+        }
+
+        private Path file(String key) {
+            return directory.resolve(key + EXTENSION);
+        }
+
+        // The entry saved in the file of a key; null if there is none, or it is unreadable or of
+        // another version
+        private Entry load(String key) {
+            Path file = file(key);
+            if (!Files.exists(file)) return null;
+            try {
+                return read(file);
+            } catch (IOException | RuntimeException e) {
+                return null; // the source is lexed and parsed again
+            }
+        }
+
+        // Write an entry to a file: magic, version, whether it parsed, the messages, the tokens, the
+        // names and the tree. Numbers are written as varints, see writeVarint, the offsets of tokens
+        // and nodes as differences from the token or node before, and the nodes linked to as
+        // differences from the node, which takes about 3 bytes per token and 5 per node.
+        public static void write(Entry entry, Path file) throws IOException {
+            Path partial = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeBoolean(entry.parsed);
+                writeVarint(out, entry.messages.size());
+                for (String message : entry.messages) writeString(out, message.getBytes(StandardCharsets.UTF_8));
+
+                TokenBuffer tokens = entry.tokens;
+                writeVarint(out, tokens.size());
+                int end = 0;
+                for (int i = 0; i < tokens.size(); i++) {
+                    TokenKind kind = tokens.kind(i);
+                    out.writeByte(kind.ordinal());
+                    writeVarint(out, (int) tokens.start(i) - end);
+                    writeVarint(out, (int) (tokens.end(i) - tokens.start(i)));
+                    if (kind == TokenKind.NUM || kind == TokenKind.BOOLEAN_LITERAL) writeVarint(out, tokens.numValue(i));
+                    end = (int) tokens.end(i);
+                }
+
+                Ast ast = entry.ast;
+                Names names = ast.names();
+                writeVarint(out, names.size());
+                for (int id = 0; id < names.size(); id++) writeString(out, names.name(id).getBytes(StandardCharsets.ISO_8859_1));
+                writeVarint(out, ast.size());
+                writeVarint(out, ast.root() + 1);
+                int location = 0;
+                for (int node = 0; node < ast.size(); node++) {
+                    out.writeByte(ast.kind(node).ordinal());
+                    writeVarint(out, link(node, ast.firstChild(node)));
+                    writeVarint(out, link(node, ast.nextSibling(node)));
+                    writeVarint(out, zigzag(ast.value(node))); // folded numbers may be negative
+                    writeVarint(out, zigzag((int) ast.location(node) - location)); // operators come after their left operand
+                    location = (int) ast.location(node);
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Read a file written by write; null if it is of another version
+        public static Entry read(Path file) throws IOException {
+            ByteBuffer in;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+            boolean parsed = in.get() != 0;
+            ArrayList<String> messages = new ArrayList<>();
+            for (int i = readVarint(in); i > 0; i--) messages.add(new String(readString(in), StandardCharsets.UTF_8));
+
+            TokenBuffer tokens = new TokenBuffer();
+            int end = 0;
+            for (int i = readVarint(in); i > 0; i--) {
+                TokenKind kind = TokenKind.of(in.get());
+                int start = end + readVarint(in);
+                end = start + readVarint(in);
+                tokens.add(kind, start, end, kind == TokenKind.NUM || kind == TokenKind.BOOLEAN_LITERAL ? readVarint(in) : 0);
+            }
+
+            Names names = new Names();
+            for (int i = readVarint(in); i > 0; i--) names.intern(new String(readString(in), StandardCharsets.ISO_8859_1));
+            Ast ast = new Ast(names);
+            int size = readVarint(in);
+            ast.setRoot(readVarint(in) - 1);
+            Ast.NodeKind[] kinds = Ast.NodeKind.values();
+            int location = 0;
+            for (int node = 0; node < size; node++) {
+                Ast.NodeKind kind = kinds[in.get()];
+                int firstChild = node(node, readVarint(in));
+                int nextSibling = node(node, readVarint(in));
+                int value = unzigzag(readVarint(in));
+                location += unzigzag(readVarint(in));
+                ast.add(kind, value, location);
+                ast.setFirstChild(node, firstChild);
+                ast.setNextSibling(node, nextSibling);
+            }
+            return new Entry(tokens, ast, parsed, messages);
+        }
+
+        // Write an int 7 bits at a time, low bits first, the high bit of each byte set if more follow;
+        // small numbers take a single byte
+        private static void writeVarint(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarint(ByteBuffer in) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        // A node linked to from node, as its distance from node, which is mostly small; 0 for NONE
+        private static int link(int node, int to) {
+            return to == Ast.NONE ? 0 : zigzag(to - node);
+        }
+
+        private static int node(int node, int link) {
+            return link == 0 ? Ast.NONE : node + unzigzag(link);
+        }
+
+        // Interleave negative and positive ints, so small ones of either sign make small varints
+        private static int zigzag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        private static int unzigzag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private static void writeString(DataOutputStream out, byte[] bytes) throws IOException {
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        private static byte[] readString(ByteBuffer in) {
+            byte[] bytes = new byte[readVarint(in)];
+            in.get(bytes);
+            return bytes;
+        }
+    }
+
+    // Result of checking one file
+    public static class CheckResult {
+        private final Path path;
+        private final boolean passed;
+        private final List<String> messages; // lexical, syntax and type errors, or why the file could not be read
+        private final long bytes;
+        private final Ast ast; // the syntax tree, if it was kept
+        private final String output; // what the program printed, if it was run
+        private final String optimization; // the Optimizer report, if it was optimized
+        private final boolean cached; // found in a CheckCache rather than lexed and parsed
+
+        public CheckResult(Path path, boolean passed, List<String> messages, long bytes) {
+            this(path, passed, messages, bytes, null, null, null, false);
+        }
+
+        public CheckResult(Path path, boolean passed, List<String> messages, long bytes, Ast ast, String output, String optimization,
+                boolean cached) {
+            this.path = path;
+            this.passed = passed;
+            this.messages = messages;
+            this.bytes = bytes;
+            this.ast = ast;
+            this.output = output;
+            this.optimization = optimization;
+            this.cached = cached;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public boolean passed() {
+            return passed;
+        }
+
+        public List<String> getMessages() {
+            return messages;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        // Syntax tree of a file that passed, null unless asked for
+        public Ast getAst() {
+            return ast;
+        }
+
+        // What the program printed, null unless it was run
+        public String getOutput() {
+            return output;
+        }
+
+        // What the Optimizer did, null unless it ran
+        public String getOptimization() {
+            return optimization;
+        }
+
+        public boolean wasCached() {
+            return cached;
+        }
+    }
+
+    // How a program is run: walking its syntax tree, compiled to Bytecode for the VirtualMachine,
+    // compiled to JVM bytecode by the JvmCompiler (with the VirtualMachine for programs too large), or
+    // walking its syntax tree with a Profiler
+    public enum Engine {
+        INTERPRETER,
+        VM,
+        JIT,
+        PROFILE
+    }
+
+    // Lex, parse and type check one file without printing anything but the trace; it passes if it has
+    // no lexical, syntax or type errors
+    public static CheckResult check(Path path, Trace trace) {
+        return check(path, trace, false, null, EnumSet.noneOf(Optimizer.Pass.class));
+    }
+
+    // Same, keeping the syntax tree in the result if the file passes and keepAst is set, and running
+    // the program with the given engine if it passes and engine is not null; what it prints is kept in
+    // the result, and a runtime error makes it fail. With the VM, the bytecode is saved next to the
+    // file, and a file saved from the same source is run without lexing, parsing or checking it again,
+    // unless there are passes to report on. A file that passes is optimized first with the given
+    // passes, if any.
+    public static CheckResult check(Path path, Trace trace, boolean keepAst, Engine engine, Set<Optimizer.Pass> passes) {
+        return check(path, trace, keepAst, engine, passes, null);
+    }
+
+    // Same, with the tokens, tree and errors of a file looked up in the cache first, when not null;
+    // a file found there is neither lexed nor parsed, and a file that is not is added to it. The
+    // cache is not used with a trace, which shows the lexing and parsing.
+    public static CheckResult check(Path path, Trace trace, boolean keepAst, Engine engine, Set<Optimizer.Pass> passes, CheckCache cache) {
+        return check(path, trace, keepAst, engine, passes, cache, Metrics.recording() ? new Metrics() : Metrics.OFF);
+    }
+
+    // Same, counting what each phase does in metrics, which may be Metrics.OFF; with metrics, the
+    // file is lexed on the parser's thread
+    public static CheckResult check(Path path, Trace trace, boolean keepAst, Engine engine, Set<Optimizer.Pass> passes, CheckCache cache,
+            Metrics metrics) {
+        return check(path, trace, keepAst, engine, passes, cache, metrics, new LexicalAnalyzer());
+    }
+
+    // Same, lexing with the given LexicalAnalyzer, new or reset. Files of PIPELINE_THRESHOLD bytes or
+    // more are lexed by it on another thread where there is more than one core; that thread has
+    // stopped by the time this returns. Files of PARALLEL_THRESHOLD bytes or more, which may exceed
+    // 2 GB, are lexed in chunks by a ParallelLexer instead, without tracing their tokens; they are
+    // not cached, nor saved as bytecode.
+    static CheckResult check(Path path, Trace trace, boolean keepAst, Engine engine, Set<Optimizer.Pass> passes, CheckCache cache,
+            Metrics metrics, LexicalAnalyzer lexicalAnalyzer) {
+        ArrayList<String> messages = new ArrayList<>();
+        lexicalAnalyzer.setTrace(trace);
+        lexicalAnalyzer.setMetrics(metrics);
+        LexicalAnalyzer.ErrorHandler errors = (line, column, message) -> messages.add(line + ":" + column + "\t>>>>>> " + message);
+        lexicalAnalyzer.setErrorHandler(errors);
+        long size;
+        TokenBuffer[] chunks = null; // the tokens of a file lexed in parallel
+        try {
+            size = Files.size(path);
+            if (size >= PARALLEL_THRESHOLD)
+                chunks = new ParallelLexer().lex(path, errors);
+            else
+                lexicalAnalyzer.fileInput(path);
+        } catch (IOException e) {
+            messages.add("Error reading file: " + e.getMessage());
+            return new CheckResult(path, false, messages, 0);
+        }
+        ByteBuffer source = chunks == null ? lexicalAnalyzer.source() : null; // chunks are too large to hash in one buffer
+        if (engine == Engine.VM && !keepAst && passes.isEmpty() && source != null) {
+            Bytecode saved = Bytecode.saved(path, source);
+            if (saved != null) {
+                StringWriter output = new StringWriter();
+                try {
+                    new VirtualMachine().run(saved, output);
+                } catch (RuntimeError | IOException e) {
+                    messages.add(e.getMessage());
+                }
+                return new CheckResult(path, messages.isEmpty(), messages, size, null, output.toString(), null, false);
+            }
+        }
+
+        String key = cache != null && trace == Trace.OFF && source != null ? CheckCache.key(source) : null;
+        CheckCache.Entry cached = key != null ? cache.get(key) : null;
+        Ast ast;
+        boolean parsed;
+        if (cached != null) {
+            messages.addAll(cached.getMessages());
+            ast = cached.getAst(source);
+            parsed = cached.parsed();
+            metrics.cached();
+        } else {
+            // Tokens for the cache are kept, and tokens counted, as they are lexed on the parser's thread
+            TokenBuffer recorded = key != null ? new TokenBuffer() : null;
+            TokenSource tokens = chunks != null ? new ChunkedTokenSource(chunks)
+                    : size >= PIPELINE_THRESHOLD && recorded == null && !metrics.enabled && Runtime.getRuntime().availableProcessors() > 1
+                    ? new PipelinedTokenSource(lexicalAnalyzer)
+                    : new LexerTokenSource(lexicalAnalyzer);
+            if (recorded != null) ((LexerTokenSource) tokens).record(recorded);
+            Parsing parsing = new Parsing(tokens);
+            parsing.setTrace(trace);
+            metrics.start();
+            parsed = parsing.parse();
+            if (tokens instanceof PipelinedTokenSource)
+                ((PipelinedTokenSource) tokens).close(); // the lexer thread may still be running after a syntax error
+            metrics.parsed(path, size, parsing, messages.size());
+            messages.addAll(parsing.getDiagnostics());
+            ast = parsing.getAst();
+            if (recorded != null) cache.put(key, new CheckCache.Entry(recorded, ast, parsed, messages));
+        }
+        if (cache != null && !passes.isEmpty()) ast = ast.copy(); // the Optimizer changes the tree
+        StringWriter output = null;
+        String optimization = null;
+        if (parsed) {
+            // The parser and the TypeChecker nest as deep as the heap allows; the rest recurse, see deep()
+            TypeChecker checker = new TypeChecker(ast);
+            checker.setTrace(trace);
+            metrics.start();
+            boolean checked = checker.check();
+            metrics.end(Metrics.Phase.CHECK, path, ast.size(), checker.getDiagnostics().size());
+            if (!checked) {
+                messages.addAll(checker.getDiagnostics());
+            } else if (!passes.isEmpty()) {
+                Optimizer optimizer = new Optimizer(ast, checker, passes);
+                metrics.start();
+                deep(ast, optimizer::optimize);
+                metrics.end(Metrics.Phase.OPTIMIZE, path, ast.size(), 0);
+                optimization = optimizer.report();
+            }
+            if (messages.isEmpty() && engine != null) {
+                StringWriter printed = new StringWriter();
+                Ast program = ast;
+                metrics.start();
+                deep(ast, () -> {
+                    try {
+                        run(engine, program, checker, path, source, printed);
+                    } catch (RuntimeError | IOException e) {
+                        messages.add(e.getMessage());
+                    }
+                });
+                metrics.end(Metrics.Phase.RUN, path, ast.size(), messages.size());
+                output = printed;
+            }
+        }
+        boolean passed = messages.isEmpty();
+        return new CheckResult(path, passed, messages, size,
+                passed && keepAst ? ast : null, output == null ? null : output.toString(), optimization, cached != null);
+    }
+
+    // Inner class checking many files concurrently, for `java Parsing [--jobs N] file|directory|glob...`.
+    // With a trace, the lines of files checked at the same time are interleaved. With printAst, the
+    // syntax tree of each file that passed is printed after it, see AstPrinter. With an engine, each
+    // file that passed is run and what it printed is shown after it. With optimization passes, each
+    // file that passed is optimized before that, and what they removed is shown. With a CheckCache,
+    // files lexed and parsed before are looked up in it, and the totals say how many were found.
+    // Directories are searched for .txt files. Each file is checked on its own virtual thread where
+    // the JDK has them, otherwise on a pool with one thread per core (or N threads with --jobs).
+    // Prints PASS or FAIL per file in the order given, then totals; returns the exit code: 0 if all
+    // files passed, 1 if any failed, 2 for bad arguments. Files are looked for in the working
+    // directory of the process unless given another one, and shown as they were given. With a
+    // Metrics.Registry, what checking each file did is added to it.
+    public static class BatchChecker {
+        private final Trace trace;
+        private final boolean printAst;
+        private final Engine engine; // null to only check
+        private final Set<Optimizer.Pass> passes;
+        private final CheckCache cache; // null to lex and parse every file
+        private Path directory = Path.of(""); // relative paths are from there
+        private PrintStream out = System.out;
+        private Queue<LexicalAnalyzer> analyzers = new ConcurrentLinkedQueue<>(); // reset, for files to come
+        private Metrics.Registry metrics; // null to not count
+
+        public BatchChecker(Trace trace, boolean printAst, Engine engine, Set<Optimizer.Pass> passes, CheckCache cache) {
+            this.trace = trace;
+            this.printAst = printAst;
+            this.engine = engine;
+            this.passes = passes;
+            this.cache = cache;
+        }
+
+        public void setDirectory(Path directory) {
+            this.directory = directory;
+        }
+
+        public void setOutput(PrintStream out) {
+            this.out = out;
+        }
+
+        // Share LexicalAnalyzers with other BatchCheckers
+        public void setAnalyzers(Queue<LexicalAnalyzer> analyzers) {
+            this.analyzers = analyzers;
+        }
+
+        // Add up the Metrics of each file checked
+        public void setMetrics(Metrics.Registry metrics) {
+            this.metrics = metrics;
+        }
+
+        public int run(String[] args) {
+            int jobs = 0;
+            ArrayList<Path> files = new ArrayList<>(); // as given
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i].equals("--jobs") && i + 1 < args.length) {
+                        jobs = Integer.parseInt(args[++i]);
+                    } else {
+                        addFiles(args[i], files);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                out.println("Error: " + e.getMessage());
+                return 2;
+            }
+            if (files.isEmpty()) {
+                out.println("No files to check");
+                return 2;
+            }
+
+            long startTime = System.nanoTime();
+            // A single file is checked on this thread: starting threads would take longer than it
+            ExecutorService executor = files.size() == 1 ? null : newExecutor(jobs);
+            ArrayList<Future<CheckResult>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(executor == null ? CompletableFuture.completedFuture(check(file)) : executor.submit(() -> check(file)));
+            }
+
+            int passed = 0;
+            int cached = 0;
+            long bytes = 0;
+            StringBuilder report = new StringBuilder();
+            try {
+                if (trace != Trace.OFF) {
+                    // Report after the whole trace rather than in the middle of it
+                    for (Future<CheckResult> future : results) future.get();
+                    trace.flush();
+                }
+                for (int i = 0; i < files.size(); i++) {
+                    CheckResult result = results.get(i).get();
+                    report.setLength(0);
+                    report.append(result.passed() ? "PASS " : "FAIL ").append(files.get(i)).append('\n');
+                    for (String message : result.getMessages()) {
+                        report.append("    ").append(message).append('\n');
+                    }
+                    if (result.getOptimization() != null) report.append("    ").append(result.getOptimization()).append('\n');
+                    if (result.getAst() != null) report.append(AstPrinter.print(result.getAst()));
+                    if (result.getOutput() != null) report.append(result.getOutput());
+                    out.print(report);
+                    if (result.passed()) passed++;
+                    if (result.wasCached()) cached++;
+                    bytes += result.getBytes();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                out.println("Error: " + e);
+                return 2;
+            } finally {
+                if (executor != null) executor.shutdown();
+            }
+
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            out.printf("%d files: %d passed, %d failed; %d bytes in %.3f s (%.2f MB/s, %.0f files/s)%n",
+                    files.size(), passed, files.size() - passed, bytes, seconds, bytes / 1e6 / seconds, files.size() / seconds);
+            if (cache != null) out.printf("cache: %d found, %d lexed and parsed%n", cached, files.size() - cached);
+            return passed == files.size() ? 0 : 1;
+        }
+
+        // Check a file as given with a LexicalAnalyzer from analyzers, given back once it is done with
+        private CheckResult check(Path file) {
+            LexicalAnalyzer lexicalAnalyzer = analyzers.poll();
+            if (lexicalAnalyzer == null) lexicalAnalyzer = new LexicalAnalyzer();
+            Path path = directory.resolve(file);
+            Metrics counted = metrics != null || Metrics.recording() ? new Metrics() : Metrics.OFF;
+            CheckResult result = Parsing.check(path, trace, printAst, engine, passes, cache, counted, lexicalAnalyzer);
+            if (metrics != null) metrics.add(counted);
+            lexicalAnalyzer.reset();
+            analyzers.offer(lexicalAnalyzer);
+            List<String> messages = result.getMessages();
+            if (!path.equals(file) && messages.size() == 1 && messages.get(0).startsWith("Error reading file: ")) {
+                // Name the file as it was given
+                result = new CheckResult(file, false, List.of(messages.get(0).replace(path.toString(), file.toString())), 0);
+            }
+            return result;
+        }
+
+        // Add a file, the .txt files under a directory, or the files matching a glob pattern
+        private void addFiles(String arg, List<Path> files) throws IOException {
+            if (arg.indexOf('*') < 0 && arg.indexOf('?') < 0 && arg.indexOf('[') < 0 && arg.indexOf('{') < 0) {
+                Path path = Path.of(arg);
+                if (Files.isDirectory(directory.resolve(path))) {
+                    addMatching(path, path.getFileSystem().getPathMatcher("glob:**.txt"), files);
+                } else {
+                    files.add(path); // missing files are reported by check()
+                }
+                return;
+            }
+
+            // Search from the directory part in front of the first wildcard
+            int wildcard = arg.length();
+            for (char ch : "*?[{".toCharArray()) {
+                int at = arg.indexOf(ch);
+                if (at >= 0) wildcard = Math.min(wildcard, at);
+            }
+            int slash = arg.lastIndexOf('/', wildcard);
+            Path base = slash < 0 ? Path.of("") : Path.of(arg.substring(0, slash + 1));
+            addMatching(base, base.getFileSystem().getPathMatcher("glob:" + arg), files);
+        }
+
+        // Add the files under base that match, as base followed by their path from base
+        private void addMatching(Path base, PathMatcher matcher, List<Path> files) throws IOException {
+            Path from = directory.resolve(base);
+            try (Stream<Path> paths = Files.walk(from)) {
+                paths.filter(Files::isRegularFile).map(p -> base.resolve(from.relativize(p))).filter(matcher::matches)
+                        .sorted().forEach(files::add);
+            }
+        }
+
+        // One virtual thread per file where the JDK has them (21 and later), otherwise a fixed pool
+        static ExecutorService newExecutor(int jobs) {
+            if (jobs <= 0) {
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    jobs = Runtime.getRuntime().availableProcessors(); // no virtual threads in this JDK
+                }
+            }
+            return Executors.newFixedThreadPool(jobs);
+        }
+    }
+
+    // Inner class for the options of main, taken out of its arguments; the rest are for BatchChecker
+    static class Options {
+        Trace.Level level = Trace.Level.OFF;
+        boolean printAst;
+        Engine engine; // null to only check
+        Set<Optimizer.Pass> passes = EnumSet.noneOf(Optimizer.Pass.class);
+        Path cacheDirectory; // null without --cache
+        Path metricsFile; // null without --metrics
+        final ArrayList<String> rest = new ArrayList<>();
+
+        // Throws IllegalArgumentException with the message to print for a bad option: one not known,
+        // or one without the value it takes. --jobs N is left in rest for the BatchChecker.
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--ast")) {
+                    options.printAst = true;
+                } else if (args[i].equals("--run")) {
+                    options.engine = Engine.INTERPRETER;
+                } else if (args[i].equals("--vm")) {
+                    options.engine = Engine.VM;
+                } else if (args[i].equals("--jit")) {
+                    options.engine = Engine.JIT;
+                } else if (args[i].equals("--profile")) {
+                    options.engine = Engine.PROFILE;
+                } else if (args[i].equals("--optimize")) {
+                    String passes = value(args, i++);
+                    try {
+                        options.passes = Optimizer.Pass.parse(passes);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Error: " + e.getMessage() + ", expected all, none or some of fold,simplify,branches,stores");
+                    }
+                } else if (args[i].equals("--cache")) {
+                    options.cacheDirectory = Path.of(value(args, i++));
+                } else if (args[i].equals("--metrics")) {
+                    options.metricsFile = Path.of(value(args, i++));
+                } else if (args[i].equals("--trace")) {
+                    String level = value(args, i++);
+                    try {
+                        options.level = Trace.Level.valueOf(level.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Error: unknown trace level " + level + ", expected one of " + Arrays.toString(Trace.Level.values()));
+                    }
+                } else if (args[i].equals("--jobs")) {
+                    options.rest.add(args[i]);
+                    options.rest.add(value(args, i++));
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Error: unknown option " + args[i]);
+                } else {
+                    options.rest.add(args[i]);
+                }
+            }
+            return options;
+        }
+
+        // The value after the option at i
+        private static String value(String[] args, int i) {
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Error: " + args[i] + " needs a value");
+            return args[i + 1];
+        }
+    }
+
+    // Inner class keeping a checker running between checks, for `java Parsing --daemon SOCKET`, where
+    // SOCKET is the path of a Unix domain socket. Each connection is a request from a Client: its
+    // working directory and its command line, whose files are checked the way main checks files on its
+    // command line. What that prints is sent back in frames as it is printed, each an int length and
+    // that many bytes, then a 0 length and the exit code. Requests are served concurrently, each on
+    // its own thread, by code the JIT has compiled for the requests before. LexicalAnalyzers are reset
+    // and reused across requests, and the CheckCache of each cache directory stays in memory for all
+    // of them. A request reads and writes files as the user running the server, so only that user may
+    // send one: the socket file is made readable and writable by its owner only, and connections from
+    // other users are closed unanswered where the peer's user can be found.
+    public static class Server implements AutoCloseable {
+        private final UnixDomainSocketAddress address;
+        private final ServerSocketChannel channel;
+        private final UserPrincipal owner; // of the socket file, the user running the server
+        private final Queue<LexicalAnalyzer> analyzers = new ConcurrentLinkedQueue<>();
+        private final ConcurrentHashMap<Path, CheckCache> caches = new ConcurrentHashMap<>();
+
+        // Listen at the socket file of the given path; a file left by a server that has stopped is
+        // replaced, but not that of a server still running
+        public Server(String path) throws IOException {
+            address = UnixDomainSocketAddress.of(path);
+            Path file = address.getPath();
+            if (Files.exists(file)) {
+                SocketChannel running;
+                try {
+                    running = SocketChannel.open(address);
+                } catch (ConnectException e) {
+                    running = null;
+                }
+                if (running != null) {
+                    running.close();
+                    throw new IOException("a server is already running at " + file);
+                }
+                Files.delete(file);
+            }
+            channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.bind(address);
+            if (file.getFileSystem().supportedFileAttributeViews().contains("posix"))
+                Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+            owner = Files.getOwner(file);
+        }
+
+        // Serve requests until closed
+        public void run() throws IOException {
+            ExecutorService executor = BatchChecker.newExecutor(0);
+            try {
+                while (true) {
+                    SocketChannel client = channel.accept();
+                    executor.submit(() -> serve(client));
+                }
+            } catch (ClosedChannelException e) {
+                // closed
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        public void close() throws IOException {
+            channel.close();
+            Files.deleteIfExists(address.getPath());
+        }
+
+        private void serve(SocketChannel client) {
+            try (client) {
+                if (client.supportedOptions().contains(ExtendedSocketOptions.SO_PEERCRED)
+                        && !client.getOption(ExtendedSocketOptions.SO_PEERCRED).user().equals(owner))
+                    return; // another user
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+                Path directory = Path.of(in.readUTF());
+                String[] args = new String[in.readInt()];
+                for (int i = 0; i < args.length; i++) args[i] = in.readUTF();
+                DataOutputStream frames = new DataOutputStream(Channels.newOutputStream(client));
+                PrintStream out = new PrintStream(new BufferedOutputStream(new FrameOutputStream(frames), 1 << 16));
+                int exitCode = check(directory, args, out);
+                out.flush();
+                frames.writeInt(0);
+                frames.writeInt(exitCode);
+                frames.flush();
+            } catch (IOException e) {
+                // the client went away
+            }
+        }
+
+        // Check the files of a command line as main would, printing to out; returns the exit code
+        private int check(Path directory, String[] args, PrintStream out) {
+            Options options;
+            try {
+                options = Options.parse(args);
+            } catch (IllegalArgumentException e) {
+                out.println(e.getMessage());
+                return 2;
+            }
+            if (options.rest.isEmpty()) {
+                out.println("No files to check");
+                return 2;
+            }
+            CheckCache cache = options.cacheDirectory == null ? null
+                    : caches.computeIfAbsent(directory.resolve(options.cacheDirectory).normalize(),
+                            cacheDirectory -> new CheckCache(cacheDirectory, CheckCache.DEFAULT_MAX_BYTES));
+            Trace.AsyncSink sink = options.level == Trace.Level.OFF ? null : new Trace.AsyncSink(out);
+            Trace trace = sink == null ? Trace.OFF : new Trace(options.level, sink);
+            BatchChecker checker = new BatchChecker(trace, options.printAst, options.engine, options.passes, cache);
+            checker.setDirectory(directory);
+            checker.setOutput(out);
+            checker.setAnalyzers(analyzers);
+            Metrics.Registry metrics = options.metricsFile == null ? null : new Metrics.Registry();
+            checker.setMetrics(metrics);
+            int exitCode = checker.run(options.rest.toArray(new String[0]));
+            if (sink != null) sink.close();
+            if (metrics != null) {
+                try {
+                    metrics.write(directory.resolve(options.metricsFile));
+                } catch (IOException e) {
+                    out.println("Error: " + e.getMessage());
+                    return 2;
+                }
+            }
+            return exitCode;
+        }
+
+        // Writes each write as a frame: its length, then its bytes
+        private static class FrameOutputStream extends OutputStream {
+            private final DataOutputStream out;
+
+            FrameOutputStream(DataOutputStream out) {
+                this.out = out;
+            }
+
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            // Synchronized, as the trace is written by a thread of its own
+            public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0) return; // a 0 length ends the output
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+
+            public void flush() throws IOException {
+                out.flush();
+            }
+        }
+    }
+
+    // Inner class sending a command line to a Server, for `java Parsing --client SOCKET [option...]
+    // file|directory|glob...`, which prints what the server sends back and exits with its exit code,
+    // the same as main checking the files itself
+    public static class Client {
+        private Client() {
+        }
+
+        // Connect to the server at the socket file of the given path; throws an IOException if there
+        // is no server there
+        public static SocketChannel connect(String path) throws IOException {
+            return SocketChannel.open(UnixDomainSocketAddress.of(path));
+        }
+
+        // Send args with the working directory to the server and print its output to System.out;
+        // returns the exit code, or throws an IOException if the connection fails on the way
+        public static int run(SocketChannel channel, String[] args) throws IOException {
+            try (channel) {
+                DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                request.writeUTF(Path.of("").toAbsolutePath().toString());
+                request.writeInt(args.length);
+                for (String arg : args) request.writeUTF(arg);
+                request.flush();
+
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+                byte[] buffer = new byte[1 << 16];
+                for (int length = in.readInt(); length != 0; length = in.readInt()) {
+                    while (length > 0) {
+                        int read = in.read(buffer, 0, Math.min(length, buffer.length));
+                        if (read < 0) throw new EOFException();
+                        System.out.write(buffer, 0, read);
+                        length -= read;
+                    }
+                }
+                System.out.flush();
+                return in.readInt();
+            }
+        }
+    }
+
+    // Inputs at least this large (in bytes) are lexed and parsed on separate threads
+    private static final int PIPELINE_THRESHOLD = 4 << 20;
+
+    // Inputs at least this large (in bytes) are lexed in parallel chunks, see ParallelLexer; the
+    // largest that can be mapped at once are just below 2 GB
+    private static final long PARALLEL_THRESHOLD = 256 << 20;
+
+    // Main method to execute the program
+    // Usage: java Parsing [--trace off|errors|tokens|parse] [--ast] [--optimize all|none|PASS,...] [--run|--vm|--jit|--profile]
+    //                    [--cache DIRECTORY] [--metrics FILE] [--jobs N] [file|directory|glob...]
+    //        java Parsing --daemon SOCKET
+    //        java Parsing --client SOCKET [option...] file|directory|glob...
+    // With --ast, the syntax tree of a program that parses is printed, see AstPrinter. With --run, a
+    // program without errors is run by the Interpreter; with --vm, it is compiled and run by the
+    // VirtualMachine, and the bytecode saved in FILE.pbc is used instead while FILE does not change
+    // and there is no --optimize; with --jit, it is compiled to JVM bytecode, see JvmCompiler; with
+    // --profile, it is run by the Interpreter and its hot spots are printed after its output, and the
+    // samples of where its time went are saved in FILE.folded for flame graph tools, see Profiler.
+    // With --optimize, a program without errors is optimized by the given passes (fold, simplify,
+    // branches, stores) first, see Optimizer.
+    // With --cache, files on the command line that were lexed and parsed before, by this run or one
+    // keeping its cache in the same directory, are not lexed and parsed again, see CheckCache.
+    // With --metrics, the time, volume and errors of each phase of checking the files on the command
+    // line are written to FILE as JSON, see Metrics; a Flight Recorder recording gets them as events.
+    // With --daemon, checks are served at SOCKET, the path of a Unix domain socket, for --client,
+    // which prints the same as checking the files here would, see Server; without a server at SOCKET,
+    // the client checks the files itself.
+    public static void main(String[] args) {
+        if (args.length >= 2 && args[0].equals("--daemon")) {
+            // Serve checks until killed; the server is closed on the way out, which removes its socket file
+            Server server;
+            try {
+                server = new Server(args[1]);
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    // the socket file stays
+                }
+            }));
+            System.out.println("Listening on " + args[1]);
+            try {
+                server.run();
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                System.exit(2);
+            }
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--client")) {
+            String[] request = Arrays.copyOfRange(args, 2, args.length);
+            SocketChannel channel;
+            try {
+                channel = Client.connect(args[1]);
+            } catch (IOException e) {
+                channel = null; // no server there: check the files here
+            }
+            if (channel != null) {
+                try {
+                    System.exit(Client.run(channel, request));
+                } catch (IOException e) {
+                    // Part of the output may have been printed, so the files are not checked here
+                    System.out.println("Error: lost the server at " + args[1] + ": " + e.getMessage());
+                    System.exit(2);
+                }
+            }
+            args = request;
+        }
+
+        // Take out the trace level, --ast, the optimizations, the cache, the metrics file and the engine; the trace is written to System.out by a background thread
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        boolean printAst = options.printAst;
+        Engine engine = options.engine;
+        Set<Optimizer.Pass> passes = options.passes;
+        Trace.AsyncSink sink = options.level == Trace.Level.OFF ? null : new Trace.AsyncSink(System.out);
+        Trace trace = sink == null ? Trace.OFF : new Trace(options.level, sink);
+
+        if (!options.rest.isEmpty()) {
+            // Files on the command line: check them all and exit
+            CheckCache cache = options.cacheDirectory == null ? null : new CheckCache(options.cacheDirectory, CheckCache.DEFAULT_MAX_BYTES);
+            BatchChecker checker = new BatchChecker(trace, printAst, engine, passes, cache);
+            Metrics.Registry metrics = options.metricsFile == null ? null : new Metrics.Registry();
+            checker.setMetrics(metrics);
+            int exitCode = checker.run(options.rest.toArray(new String[0]));
+            if (sink != null) sink.close();
+            if (metrics != null) {
+                try {
+                    metrics.write(options.metricsFile);
+                } catch (IOException e) {
+                    System.out.println("Error: " + e.getMessage());
+                    System.exit(2);
+                }
+            }
+            System.exit(exitCode);
+        }
+
+        // Lexical errors are printed as they are found, or traced with --trace errors, and collected,
+        // as check() does, so a program with any is not run
+        ArrayList<String> lexicalErrors = new ArrayList<>();
+        LexicalAnalyzer.ErrorHandler errors = (line, column, message) -> {
+            if (!trace.errors) LexicalAnalyzer.printError(line, column, message); // otherwise the trace shows it
+            lexicalErrors.add(message);
+        };
+        LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer();
+        lexicalAnalyzer.setTrace(trace);
+        lexicalAnalyzer.setErrorHandler(errors);
+        TokenSource tokens = null; // set once a valid file is found
+        Path path = null;
+
+        do {
+            // Prompt the user for the file path
+            String filePath = promptForFilePath();
+            if (filePath == null) {
+                System.out.println();
+                System.out.println("No input file given");
+                System.exit(2);
+            }
+
+            try {
+                path = Path.of(filePath);
+                if (Files.size(path) >= PARALLEL_THRESHOLD) {
+                    // Large, maybe too large to map at once: lex the file in chunks, in parallel
+                    tokens = new ChunkedTokenSource(new ParallelLexer().lex(path, errors));
+                } else {
+                    // Map the input file into memory for the LexicalAnalyzer
+                    lexicalAnalyzer.fileInput(path);
+
+                    // Bytecode saved from this same source was checked already: just run it
+                    Bytecode saved = engine == Engine.VM && !printAst && passes.isEmpty() ? Bytecode.saved(path, lexicalAnalyzer.source()) : null;
+                    if (saved != null) {
+                        if (sink != null) sink.close();
+                        System.out.println("Parsing successful.");
+                        runVm(saved);
+                        return;
+                    }
+
+                    // Pull tokens from the LexicalAnalyzer as the parser goes; large inputs are
+                    // lexed on a separate thread so lexing and parsing overlap
+                    tokens = lexicalAnalyzer.inputSize() >= PIPELINE_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1
+                            ? new PipelinedTokenSource(lexicalAnalyzer)
+                            : new LexerTokenSource(lexicalAnalyzer);
+                }
+
+            } catch (IOException e) {
+                // Handle IO exceptions
+                System.out.println("Error reading file: " + e.getMessage());
+            }
+
+        } while (tokens == null); // Keep looping until a valid file is found
+
+        // Create a Parsing object reading the tokens
+        Parsing parsing = new Parsing(tokens);
+        parsing.setTrace(trace);
+
+        // Parse and type check the input program, then write out the rest of the trace before the result
+        boolean successful = parsing.parse();
+        TypeChecker checker = new TypeChecker(parsing.getAst());
+        checker.setTrace(trace);
+        if (successful) checker.check();
+        if (sink != null) sink.close();
+        if (successful) {
+            if (lexicalErrors.isEmpty()) System.out.println("Parsing successful.");
+            if (lexicalErrors.isEmpty() && checker.getDiagnostics().isEmpty() && !passes.isEmpty()) {
+                Optimizer optimizer = new Optimizer(parsing.getAst(), checker, passes);
+                deep(parsing.getAst(), optimizer::optimize);
+                System.out.println(optimizer.report());
+            }
+            if (printAst) System.out.print(AstPrinter.print(parsing.getAst()));
+            for (String diagnostic : checker.getDiagnostics()) {
+                System.out.println(diagnostic);
+            }
+            if (!lexicalErrors.isEmpty() || !checker.getDiagnostics().isEmpty()) System.exit(1);
+            if (engine != null) {
+                Path file = path;
+                deep(parsing.getAst(), () -> {
+                    try {
+                        run(engine, parsing.getAst(), checker, file, lexicalAnalyzer.source(), new OutputStreamWriter(System.out));
+                    } catch (RuntimeError | IOException e) {
+                        System.out.println(e.getMessage());
+                        System.exit(1);
+                    }
+                });
+            }
+        } else {
+            for (String diagnostic : parsing.getDiagnostics()) {
+                System.out.println(diagnostic);
+            }
+            System.exit(1);
+        }
+    }
+
+    // Trees nested at most this deep are walked on the thread at hand, see deep()
+    private static final int SHALLOW = 512;
+
+    // Stack size of the threads deeper trees are walked on; only the part used is committed
+    private static final long DEEP_STACK = 1L << 30;
+
+    // Run a walk over ast that recurses at each level of nesting, as the Optimizer, the engines and
+    // AstPrinter do: on this thread if the tree is at most SHALLOW deep, otherwise on a thread of its
+    // own with a stack of DEEP_STACK bytes, waiting for it to end. What the walk throws is thrown here.
+    static void deep(Ast ast, Runnable walk) {
+        if (!ast.deeperThan(SHALLOW)) {
+            walk.run();
+            return;
+        }
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                walk.run();
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+        }, "deep", DEEP_STACK);
+        thread.start();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true; // the walk uses what the caller does until it ends
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure[0] instanceof RuntimeException) throw (RuntimeException) failure[0];
+        if (failure[0] instanceof Error) throw (Error) failure[0];
+    }
+
+    // Run a checked program of the given file with an engine; source is the file as lexed, null if it
+    // was lexed in chunks, which are too large to hash in one buffer and are not saved as bytecode
+    static void run(Engine engine, Ast ast, TypeChecker checker, Path path, ByteBuffer source, Writer out) throws IOException {
+        if (engine == Engine.JIT) {
+            JitProgram program = JvmCompiler.compile(ast, checker);
+            if (program != null) {
+                program.run(out);
+                return;
+            }
+        }
+        if (engine == Engine.INTERPRETER) {
+            new Interpreter(ast, checker, out).run();
+            return;
+        }
+        if (engine == Engine.PROFILE) {
+            Profiler profiler = new Profiler(ast, checker);
+            profiler.start();
+            try {
+                new Interpreter(ast, checker, out, profiler).run();
+            } finally {
+                profiler.stop();
+                out.append(profiler.report());
+                out.flush();
+                profiler.save(path);
+            }
+            return;
+        }
+        Bytecode bytecode = Compiler.compile(ast, checker, source == null ? new byte[0] : Bytecode.hash(source));
+        if (source != null && engine == Engine.VM) bytecode.save(path);
+        new VirtualMachine().run(bytecode, out);
+    }
+
+    // Run bytecode printing to System.out; a runtime error ends with exit code 1
+    private static void runVm(Bytecode bytecode) {
+        try {
+            new VirtualMachine().run(bytecode, new OutputStreamWriter(System.out));
+        } catch (RuntimeError | IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static BufferedReader input; // System.in, made on the first prompt and kept, with any lines typed ahead
+
+    // Helper method to prompt the user for the file path; null at the end of the input
+    private static String promptForFilePath() {
+        System.out.print("Enter the path to the input file: ");
+        System.out.flush();
+        if (input == null) input = new BufferedReader(new InputStreamReader(System.in));
+        try {
+            return input.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
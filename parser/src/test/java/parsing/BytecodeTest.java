@@ -0,0 +1,121 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.Bytecode;
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.Engine;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.Trace;
+
+// Bytecode saved next to a source is only run if the VirtualMachine can run it safely; anything else
+// is compiled again
+class BytecodeTest {
+    @TempDir
+    Path directory;
+
+    private Path copy(String example) throws IOException {
+        Path file = directory.resolve(example);
+        Files.copy(Path.of("../examples-correct-syntax", example), file);
+        return file;
+    }
+
+    private static CheckResult runVm(Path file) {
+        return Parsing.check(file, Trace.OFF, false, Engine.VM, EnumSet.noneOf(Optimizer.Pass.class));
+    }
+
+    // The file saved for a source, as written, to be damaged
+    private static ByteBuffer saved(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(Bytecode.savedFile(file)));
+    }
+
+    @Test
+    void compiledExamplesVerify() throws IOException {
+        List<Path> examples;
+        try (Stream<Path> files = Files.list(Path.of("../examples-correct-syntax"))) {
+            examples = files.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        for (Path example : examples) {
+            Path file = copy(example.getFileName().toString());
+            CheckResult first = runVm(file);
+            if (!first.passed() && !Files.exists(Bytecode.savedFile(file))) continue; // did not compile
+            Bytecode bytecode = Bytecode.read(Bytecode.savedFile(file));
+            assertNotNull(bytecode, example.toString());
+            assertTrue(bytecode.verify(), example.toString());
+            assertEquals(first.getOutput(), runVm(file).getOutput(), example.toString());
+        }
+    }
+
+    @Test
+    void damagedCodeIsCompiledAgain() throws IOException {
+        Path file = copy("euclid.txt");
+        CheckResult first = runVm(file);
+        ByteBuffer bytes = saved(file);
+        int codeLength = Bytecode.read(Bytecode.savedFile(file)).size();
+        for (int i = bytes.capacity() - codeLength * 4; i < bytes.capacity(); i += 4) bytes.putInt(i, 0x7f00_0000 + i);
+        Files.write(Bytecode.savedFile(file), bytes.array());
+        assertNull(Bytecode.read(Bytecode.savedFile(file)));
+
+        CheckResult again = runVm(file);
+        assertEquals(first.getMessages(), again.getMessages());
+        assertEquals(first.getOutput(), again.getOutput());
+        assertNotNull(Bytecode.read(Bytecode.savedFile(file))); // saved again
+    }
+
+    @Test
+    void badJumpsAndStackHeightsAreRejected() throws IOException {
+        Path file = copy("euclid.txt");
+        runVm(file);
+        Bytecode good = Bytecode.read(Bytecode.savedFile(file));
+        int[] code = good.code.clone();
+        int jump = 0;
+        while (code[jump] != Bytecode.JUMP && code[jump] != Bytecode.JUMP_IF_FALSE) jump += 1 + Bytecode.OPERANDS[code[jump]];
+        code[jump + 1] = code.length; // past the end
+        assertTrue(!new Bytecode(code, good.constants, good.locations, good.frameSize, good.maxStack, good.sourceHash).verify());
+        assertTrue(!new Bytecode(good.code, good.constants, good.locations, good.frameSize, 0, good.sourceHash).verify());
+        assertTrue(!new Bytecode(good.code, good.constants, good.locations, 0, good.maxStack, good.sourceHash).verify());
+    }
+
+    @Test
+    void hugeLengthsAreRejected() throws IOException {
+        Path file = copy("ab.txt");
+        runVm(file);
+        ByteBuffer bytes = saved(file);
+        int constants = 8 + 4 + bytes.getInt(8) + 8; // after the magic, version, hash, frame and stack sizes
+        bytes.putInt(constants, Integer.MAX_VALUE);
+        Files.write(Bytecode.savedFile(file), bytes.array());
+        assertNull(Bytecode.read(Bytecode.savedFile(file)));
+        Files.write(Bytecode.savedFile(file), new byte[] {'P', 'B'});
+        assertNull(Bytecode.read(Bytecode.savedFile(file)));
+        assertTrue(runVm(file).passed());
+    }
+
+    @Test
+    void failedWriteLeavesNoPartialFile() throws IOException {
+        Path file = copy("ab.txt");
+        runVm(file);
+        Bytecode bytecode = Bytecode.read(Bytecode.savedFile(file));
+        Path target = directory.resolve("taken");
+        Files.createDirectories(target.resolve("inside")); // a directory that is not empty cannot be replaced
+        assertThrows(IOException.class, () -> bytecode.write(target));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.AstPrinter;
+import parsing.Parsing.BatchChecker;
+import parsing.Parsing.CheckCache;
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.TokenBuffer;
+import parsing.Parsing.Trace;
+
+// Files found in a CheckCache, in memory or on disk, are checked as if lexed and parsed again
+class CheckCacheTest {
+    private static final String[] CORPORA = {"../examples-correct-syntax", "../examples-incorrect-syntax"};
+
+    @TempDir
+    Path directory;
+
+    private static List<Path> corpora() throws IOException {
+        try (Stream<Path> paths = Stream.concat(Files.list(Path.of(CORPORA[0])), Files.list(Path.of(CORPORA[1])))) {
+            return paths.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // What a BatchChecker prints for the corpora, without the line with the time it took
+    private static List<String> batch(CheckCache cache) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchChecker checker = new BatchChecker(Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class), cache);
+        checker.setOutput(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        assertEquals(1, checker.run(CORPORA));
+        return Arrays.stream(bytes.toString(StandardCharsets.UTF_8).split("\n")).filter(line -> !line.contains(" bytes in ")).collect(Collectors.toList());
+    }
+
+    private static ByteBuffer source(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    // The entry of a file, lexed and parsed into cache
+    private static CheckCache.Entry entry(Path file, CheckCache cache) throws IOException {
+        Parsing.check(file, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class), cache);
+        return cache.get(CheckCache.key(source(file)));
+    }
+
+    @Test
+    void checkedTwiceThroughTheDirectory() throws IOException {
+        int files = corpora().size();
+        List<String> first = batch(new CheckCache(directory, CheckCache.DEFAULT_MAX_BYTES));
+        assertEquals("cache: 0 found, " + files + " lexed and parsed", first.get(first.size() - 1));
+
+        // A new cache, as of a later run, finds them all on disk
+        List<String> second = batch(new CheckCache(directory, CheckCache.DEFAULT_MAX_BYTES));
+        assertEquals("cache: " + files + " found, 0 lexed and parsed", second.get(second.size() - 1));
+        assertEquals(first.subList(0, first.size() - 1), second.subList(0, second.size() - 1));
+
+        // And without a cache the files are checked the same
+        List<String> uncached = batch(null);
+        assertEquals(uncached, first.subList(0, first.size() - 1));
+    }
+
+    @Test
+    void entriesReadBackAsWritten() throws IOException {
+        for (Path file : corpora()) {
+            ByteBuffer source = source(file);
+            CheckCache.Entry written = entry(file, new CheckCache(null, CheckCache.DEFAULT_MAX_BYTES));
+            Path saved = directory.resolve("entry" + CheckCache.EXTENSION);
+            CheckCache.write(written, saved);
+            CheckCache.Entry read = CheckCache.read(saved);
+            assertNotNull(read, file.toString());
+
+            assertEquals(written.parsed(), read.parsed(), file.toString());
+            assertEquals(written.getMessages(), read.getMessages(), file.toString());
+            TokenBuffer expected = written.getTokens(source), tokens = read.getTokens(source);
+            assertEquals(expected.size(), tokens.size(), file.toString());
+            for (int i = 0; i < tokens.size(); i++) {
+                String context = file + ", token " + i;
+                assertEquals(expected.kind(i), tokens.kind(i), context);
+                assertEquals(expected.start(i), tokens.start(i), context);
+                assertEquals(expected.end(i), tokens.end(i), context);
+                assertEquals(expected.value(i), tokens.value(i), context);
+            }
+            assertEquals(written.getAst(source).size(), read.getAst(source).size(), file.toString());
+            if (written.parsed())
+                assertEquals(AstPrinter.print(written.getAst(source)), AstPrinter.print(read.getAst(source)), file.toString());
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedGoesFirst() throws IOException {
+        Path[] files = {Path.of(CORPORA[0], "ab.txt"), Path.of(CORPORA[0], "euclid.txt"), Path.of(CORPORA[0], "modulo.txt")};
+        String[] keys = new String[files.length];
+        CheckCache.Entry[] entries = new CheckCache.Entry[files.length];
+        long total = 0;
+        for (int i = 0; i < files.length; i++) {
+            keys[i] = CheckCache.key(source(files[i]));
+            entries[i] = entry(files[i], new CheckCache(null, CheckCache.DEFAULT_MAX_BYTES));
+            total += entries[i].bytes();
+        }
+
+        // Room for all but one byte of the three: the least recently used goes when the third comes
+        CheckCache cache = new CheckCache(null, total - 1);
+        cache.put(keys[0], entries[0]);
+        cache.put(keys[1], entries[1]);
+        assertSame(entries[0], cache.get(keys[0]));
+        cache.put(keys[2], entries[2]);
+        assertSame(entries[0], cache.get(keys[0]));
+        assertNull(cache.get(keys[1]));
+        assertSame(entries[2], cache.get(keys[2]));
+
+        // An entry larger than the whole cache is not kept at all
+        CheckCache small = new CheckCache(null, entries[1].bytes() - 1);
+        small.put(keys[1], entries[1]);
+        assertNull(small.get(keys[1]));
+    }
+
+    @Test
+    void filesOfAnotherVersionAreIgnored() throws IOException {
+        Path file = Path.of(CORPORA[1], "euclid-error.txt");
+        String key = CheckCache.key(source(file));
+        CheckResult first = Parsing.check(file, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class),
+                new CheckCache(directory, CheckCache.DEFAULT_MAX_BYTES));
+        assertFalse(first.wasCached());
+
+        // Bump the version after the magic number
+        Path saved = directory.resolve(key + CheckCache.EXTENSION);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(saved));
+        bytes.putInt(4, bytes.getInt(4) + 1);
+        Files.write(saved, bytes.array());
+        assertNull(CheckCache.read(saved));
+        assertNull(new CheckCache(directory, CheckCache.DEFAULT_MAX_BYTES).get(key));
+
+        CheckResult again = Parsing.check(file, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class),
+                new CheckCache(directory, CheckCache.DEFAULT_MAX_BYTES));
+        assertFalse(again.wasCached());
+        assertEquals(first.getMessages(), again.getMessages());
+
+        // Saved again in the current version
+        CheckResult cached = Parsing.check(file, Trace.OFF, false, null, EnumSet.noneOf(Optimizer.Pass.class),
+                new CheckCache(directory, CheckCache.DEFAULT_MAX_BYTES));
+        assertTrue(cached.wasCached());
+        assertEquals(first.getMessages(), cached.getMessages());
+    }
+}
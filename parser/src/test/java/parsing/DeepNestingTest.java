@@ -0,0 +1,58 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.Engine;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.Trace;
+
+// Programs nested thousands deep are checked, optimized, run and printed like any other
+class DeepNestingTest {
+    private static final int DEPTH = 3000;
+
+    @TempDir
+    Path directory;
+
+    private Path write(String name, String statement) throws IOException {
+        Path file = directory.resolve(name);
+        Files.writeString(file, "program Deep:\n  int a;\n  a := 0;\n  " + statement + ";\n  print a\n.\n");
+        return file;
+    }
+
+    private static void checkAndRun(Path file, String printed) {
+        for (Engine engine : Engine.values()) {
+            CheckResult result = Parsing.check(file, Trace.OFF, true, engine, EnumSet.allOf(Optimizer.Pass.class));
+            assertTrue(result.passed(), engine + ": " + result.getMessages());
+            assertTrue(result.getOutput().startsWith(printed + "\n"), engine + ": " + result.getOutput());
+            assertTrue(Parsing.AstPrinter.print(result.getAst()).startsWith("program Deep:"));
+        }
+    }
+
+    @Test
+    void nestedIfs() throws IOException {
+        checkAndRun(write("ifs.txt", "if a = 0 then ".repeat(DEPTH) + "a := a + 1" + " end".repeat(DEPTH)), "1");
+    }
+
+    @Test
+    void nestedParentheses() throws IOException {
+        checkAndRun(write("parentheses.txt", "a := " + "(1 + ".repeat(DEPTH) + "1" + ")".repeat(DEPTH)), String.valueOf(DEPTH + 1));
+    }
+
+    @Test
+    void typeErrorsDeepDown() throws IOException {
+        Path file = write("errors.txt", "while true do ".repeat(DEPTH) + "a := not a" + " end".repeat(DEPTH));
+        CheckResult result = Parsing.check(file, Trace.OFF);
+        assertEquals(1, result.getMessages().size(), result.getMessages().toString());
+        assertTrue(result.getMessages().get(0).startsWith("Type error: 'not' needs a bool operand, found int"));
+    }
+}
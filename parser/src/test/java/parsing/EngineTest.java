@@ -0,0 +1,106 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.Engine;
+import parsing.Parsing.Optimizer;
+import parsing.Parsing.Trace;
+
+// The Interpreter, the VirtualMachine and the JvmCompiler print the same and stop at the same runtime
+// errors, optimized or not
+class EngineTest {
+    private static final Engine[] ENGINES = {Engine.INTERPRETER, Engine.VM, Engine.JIT};
+
+    @TempDir
+    Path directory;
+
+    // Output and messages of each engine, with and without all optimizations, must be those of the
+    // Interpreter without any; returns those
+    private static CheckResult assertSameOnAllEngines(Path file) {
+        CheckResult expected = Parsing.check(file, Trace.OFF, false, Engine.INTERPRETER, EnumSet.noneOf(Optimizer.Pass.class));
+        for (Set<Optimizer.Pass> passes : List.of(EnumSet.noneOf(Optimizer.Pass.class), EnumSet.allOf(Optimizer.Pass.class))) {
+            for (Engine engine : ENGINES) {
+                for (int run = 0; run < 2; run++) { // the VM runs saved bytecode the second time
+                    CheckResult result = Parsing.check(file, Trace.OFF, false, engine, passes);
+                    String context = file.getFileName() + ", " + engine + ", " + passes + ", run " + run;
+                    assertEquals(expected.getMessages(), result.getMessages(), context);
+                    assertEquals(expected.getOutput(), result.getOutput(), context);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private Path write(String name, String program) throws IOException {
+        Path file = directory.resolve(name);
+        Files.writeString(file, program);
+        return file;
+    }
+
+    @Test
+    void examples() throws IOException {
+        List<Path> examples;
+        try (Stream<Path> files = Files.list(Path.of("../examples-correct-syntax"))) {
+            examples = files.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        for (Path example : examples) {
+            Path file = directory.resolve(example.getFileName());
+            Files.copy(example, file); // so bytecode is saved next to the copy
+            assertSameOnAllEngines(file);
+        }
+    }
+
+    @Test
+    void divisionByZero() throws IOException {
+        CheckResult result = assertSameOnAllEngines(write("divide.txt",
+                "program Divide:\n  int a, z;\n  a := 7;\n  z := 0;\n  print a;\n  print a / z;\n  print 1\n.\n"));
+        assertFalse(result.passed());
+        assertEquals("7\n", result.getOutput());
+        assertEquals(1, result.getMessages().size());
+        assertTrue(result.getMessages().get(0).startsWith("Runtime error: "), result.getMessages().toString());
+    }
+
+    @Test
+    void moduloByZero() throws IOException {
+        assertFalse(assertSameOnAllEngines(write("modulo.txt",
+                "program Modulo:\n  int a, z;\n  a := 7;\n  z := a - 7;\n  print a mod z\n.\n")).passed());
+    }
+
+    @Test
+    void divisionByALiteralZero() throws IOException {
+        // Folding must leave the division to fail at run time
+        assertFalse(assertSameOnAllEngines(write("literal.txt",
+                "program Literal:\n  int a;\n  print 1;\n  a := 5 / 0;\n  print 2\n.\n")).passed());
+    }
+
+    @Test
+    void divisionByZeroInALoop() throws IOException {
+        // Fails on the fourth time round, after printing three quotients
+        CheckResult result = assertSameOnAllEngines(write("loop.txt",
+                "program Loop:\n  int a;\n  a := 3;\n  while true do\n    print 12 / a;\n    a := a - 1\n  end\n.\n"));
+        assertEquals("4\n6\n12\n", result.getOutput());
+        assertFalse(result.passed());
+    }
+
+    @Test
+    void unreadStoreOfADivisionByZero() throws IOException {
+        // a is never read, but removing the store would hide the error
+        assertFalse(assertSameOnAllEngines(write("unread.txt",
+                "program Unread:\n  int a, z;\n  z := 0;\n  a := 5 / z;\n  print z\n.\n")).passed());
+    }
+}
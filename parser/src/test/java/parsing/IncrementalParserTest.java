@@ -0,0 +1,58 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import parsing.Parsing.AstPrinter;
+import parsing.Parsing.IncrementalParser;
+
+// After any edit, the tree and errors of an IncrementalParser are those of parsing the whole text
+class IncrementalParserTest {
+    private static final String[] INSERTS = {"", " ", "\n", ";", ":=", "a", "x1", "0", "42", "(", ")", "+", "*", "mod", "not",
+            "if", "then", "else", "end", "while", "do", "print", "int", "bool", "true", ".", "@", "// note\n"};
+
+    private static void assertSameAsFullParse(IncrementalParser edited, String context) {
+        IncrementalParser full = new IncrementalParser(edited.getText());
+        assertEquals(full.getDiagnostics(), edited.getDiagnostics(), context);
+        assertEquals(AstPrinter.print(full.getAst()), AstPrinter.print(edited.getAst()), context);
+    }
+
+    @Test
+    void programWithoutName() {
+        String text = "program while ad_syntax_1:\n  int a;\n  a := 1;\n  print a\n.\n";
+        IncrementalParser parser = new IncrementalParser(text);
+        parser.edit(text.indexOf("ad_s"), 4, "");
+        assertEquals("program while yntax_1:\n  int a;\n  a := 1;\n  print a\n.\n", parser.getText());
+        assertSameAsFullParse(parser, parser.getText());
+    }
+
+    @Test
+    void randomEditsOfTheExamples() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Stream.concat(Files.list(Path.of("../examples-correct-syntax")), Files.list(Path.of("../examples-incorrect-syntax")))) {
+            files = paths.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        Random random = new Random(455);
+        for (Path file : files) {
+            IncrementalParser parser = new IncrementalParser(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+            for (int i = 0; i < 100; i++) {
+                String text = parser.getText();
+                int offset = random.nextInt(text.length() + 1);
+                int removed = random.nextInt(Math.min(6, text.length() - offset) + 1);
+                String inserted = INSERTS[random.nextInt(INSERTS.length)];
+                parser.edit(offset, removed, inserted);
+                assertSameAsFullParse(parser, file + ", edit " + i + ": " + removed + " bytes at " + offset + " to '" + inserted + "'");
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.AstPrinter;
+import parsing.Parsing.CheckResult;
+import parsing.Parsing.Engine;
+import parsing.Parsing.Optimizer.Pass;
+import parsing.Parsing.Trace;
+
+// Each pass of the Optimizer takes out the nodes it should, and nothing that changes what a program
+// prints or how it fails
+class OptimizerTest {
+    @TempDir
+    Path directory;
+
+    private Path write(String program) throws IOException {
+        Path file = directory.resolve("program.txt");
+        Files.writeString(file, program);
+        return file;
+    }
+
+    // Optimize with the given passes and run; what it prints and its messages must be those of
+    // running it unoptimized
+    private static CheckResult optimize(Path file, Set<Pass> passes) {
+        CheckResult plain = Parsing.check(file, Trace.OFF, false, Engine.INTERPRETER, EnumSet.noneOf(Pass.class));
+        CheckResult optimized = Parsing.check(file, Trace.OFF, true, Engine.INTERPRETER, passes);
+        assertEquals(plain.getMessages(), optimized.getMessages(), passes.toString());
+        assertEquals(plain.getOutput(), optimized.getOutput(), passes.toString());
+        return optimized;
+    }
+
+    private void assertPass(Pass pass, String program, String report, String printed) throws IOException {
+        CheckResult result = optimize(write(program), EnumSet.of(pass));
+        assertTrue(result.passed(), result.getMessages().toString());
+        assertEquals(report, result.getOptimization());
+        assertEquals(printed, AstPrinter.print(result.getAst()));
+    }
+
+    @Test
+    void fold() throws IOException {
+        assertPass(Pass.FOLD, "program Fold:\n  int a;\n  a := (2 * 3) + 4;\n  print a;\n  print not true\n.\n",
+                "Optimized: fold -5 nodes",
+                "program Fold:\n  int a;\n  a := 10;\n  print a;\n  print false\n.\n");
+    }
+
+    @Test
+    void simplify() throws IOException {
+        assertPass(Pass.SIMPLIFY, "program Simplify:\n  int a;\n  bool p;\n  a := 5;\n  p := false;\n  print a + 0;\n  print 1 * a;\n"
+                + "  print true and p;\n  print not (not p)\n.\n",
+                "Optimized: simplify -8 nodes",
+                "program Simplify:\n  int a;\n  bool p;\n  a := 5;\n  p := false;\n  print a;\n  print a;\n  print p;\n  print p\n.\n");
+    }
+
+    @Test
+    void branches() throws IOException {
+        assertPass(Pass.BRANCHES, "program Branches:\n  int a;\n  a := 1;\n  if true then print a else print 0 end;\n"
+                + "  while false do print a end;\n  print 2\n.\n",
+                "Optimized: branches -11 nodes",
+                "program Branches:\n  int a;\n  a := 1;\n  print a;\n  print 2\n.\n");
+    }
+
+    @Test
+    void stores() throws IOException {
+        assertPass(Pass.STORES, "program Stores:\n  int a, b;\n  a := 1;\n  b := 2;\n  a := 3;\n  print a\n.\n",
+                "Optimized: stores -6 nodes",
+                "program Stores:\n  int a, b;\n  a := 3;\n  print a\n.\n");
+    }
+
+    @Test
+    void runtimeErrorsAreKept() throws IOException {
+        // Division and mod by zero, under a multiplication by 0, an addition of 0, a literal condition
+        // and in a store never read, fail as they would unoptimized, after the same output
+        List<String> programs = List.of(
+                "program Errors:\n  int a, z;\n  z := 0;\n  print (a / z) * 0\n.\n",
+                "program Errors:\n  int a;\n  print 1;\n  print 1 / 0 + 0\n.\n",
+                "program Errors:\n  int a, z;\n  z := 0;\n  if true then a := 1 mod z end;\n  print 1\n.\n",
+                "program Errors:\n  int a, z;\n  z := 0;\n  while false do a := 1 / z end;\n  if 1 mod z = 0 then a := 1 end\n.\n");
+        for (String program : programs) {
+            Path file = write(program);
+            for (Pass pass : Pass.values()) assertFalse(optimize(file, EnumSet.of(pass)).passed(), pass + ": " + program);
+            assertFalse(optimize(file, EnumSet.allOf(Pass.class)).passed(), program);
+        }
+    }
+
+    @Test
+    void trappingStoresAreKept() throws IOException {
+        // a is never read, but its store divides by zero
+        Path file = write("program Unread:\n  int a, z;\n  z := 0;\n  a := 5 / z;\n  print 1\n.\n");
+        CheckResult result = optimize(file, EnumSet.of(Pass.STORES));
+        assertEquals(List.of("Runtime error: division by zero Position: 4:10"), result.getMessages());
+        assertEquals("", result.getOutput());
+
+        // By a literal other than 0 it cannot fail, so it goes
+        result = optimize(write("program Unread:\n  int a, z;\n  z := 0;\n  a := 5 / 2;\n  print z\n.\n"), EnumSet.of(Pass.STORES));
+        assertEquals("Optimized: stores -5 nodes", result.getOptimization());
+        assertEquals("program Unread:\n  int a, z;\n  z := 0;\n  print z\n.\n", AstPrinter.print(result.getAst()));
+    }
+}
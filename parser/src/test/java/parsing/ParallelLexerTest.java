@@ -0,0 +1,98 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.LexicalAnalyzer;
+import parsing.Parsing.ParallelLexer;
+import parsing.Parsing.TokenBuffer;
+
+// Lexed in chunks of any size, a file gives the tokens and lexical errors of lexing it whole
+class ParallelLexerTest {
+    private static final long[] CHUNK_SIZES = {1, 2, 3, 7, 16, 64, 1000};
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @TempDir
+    Path directory;
+
+    @AfterAll
+    static void shutDown() {
+        POOL.shutdown();
+    }
+
+    // Each token as kind, offsets, value and line, then each error as line, column and message
+    private static List<String> sequential(Path file) throws IOException {
+        ArrayList<String> lexed = new ArrayList<>();
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setErrorHandler((line, column, message) -> lexed.add("error " + line + ":" + column + " " + message));
+        lexer.fileInput(file);
+        TokenBuffer tokens = new TokenBuffer();
+        lexer.tokenize(tokens);
+        List<String> errors = new ArrayList<>(lexed);
+        lexed.clear();
+        add(tokens, lexed);
+        lexed.addAll(errors);
+        return lexed;
+    }
+
+    private static List<String> parallel(Path file, long chunkSize) throws IOException {
+        ArrayList<String> errors = new ArrayList<>();
+        TokenBuffer[] chunks = new ParallelLexer(POOL, chunkSize)
+                .lex(file, (line, column, message) -> errors.add("error " + line + ":" + column + " " + message));
+        ArrayList<String> lexed = new ArrayList<>();
+        for (TokenBuffer chunk : chunks) add(chunk, lexed);
+        lexed.addAll(errors);
+        return lexed;
+    }
+
+    private static void add(TokenBuffer tokens, List<String> lexed) {
+        for (int i = 0; i < tokens.size(); i++)
+            lexed.add(tokens.kind(i) + " " + tokens.start(i) + "-" + tokens.end(i) + " " + tokens.value(i) + " line " + tokens.line(i));
+    }
+
+    private static void assertSameInChunks(Path file) throws IOException {
+        List<String> expected = sequential(file);
+        for (long chunkSize : CHUNK_SIZES)
+            assertEquals(expected, parallel(file, chunkSize), file + " in chunks of " + chunkSize);
+    }
+
+    @Test
+    void examples() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Stream.concat(Files.list(Path.of("../examples-correct-syntax")), Files.list(Path.of("../examples-incorrect-syntax")))) {
+            files = paths.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) assertSameInChunks(file);
+    }
+
+    @Test
+    void errorsAtChunkBoundaries() throws IOException {
+        // Illegal characters first and last on lines, and on lines of their own, so chunks split at
+        // the new lines start and end with them; comments and blank lines in between
+        String[] lines = {"@", "a := 1 @", "@ b := 2;", "#x", "// comment @ #", "", "  ", "print a $", "c := 12345 ! 6;",
+                "if a < b then ~ end", "\t?", "x1 := true"};
+        Random random = new Random(455);
+        StringBuilder text = new StringBuilder("program P:\n");
+        for (int i = 0; i < 2000; i++) text.append(lines[random.nextInt(lines.length)]).append(random.nextBoolean() ? "\n" : "\r\n");
+        text.append("@");
+        Path file = directory.resolve("errors.txt");
+        Files.write(file, text.toString().getBytes(StandardCharsets.ISO_8859_1));
+        assertTrue(sequential(file).stream().filter(s -> s.startsWith("error ")).count() > 1000);
+        assertSameInChunks(file);
+    }
+}
@@ -0,0 +1,86 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.LexerTokenSource;
+import parsing.Parsing.LexicalAnalyzer;
+import parsing.Parsing.PipelinedTokenSource;
+import parsing.Parsing.TokenSource;
+import parsing.Parsing.Trace;
+
+// Lexing on a thread of its own must give the same messages as lexing on the parser's thread, and
+// the same every time, however far ahead of the parser the lexer thread gets
+class PipelinedTokenSourceTest {
+    @TempDir
+    Path directory;
+
+    // Syntax errors early on, which stop the parse, then lexical errors all the way to the end
+    private Path stopsEarly() throws IOException {
+        StringBuilder text = new StringBuilder("program P:\n  int a;\n");
+        for (int i = 0; i < 150; i++) text.append("  a := ;\n");
+        while (text.length() < 5 << 20) text.append("  a := 1 @ 2;\n");
+        text.append(".\n");
+        Path file = directory.resolve("stops-early.txt");
+        Files.write(file, text.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    // Lexical errors then syntax errors, as check() gives them, from parsing the tokens of pipelined
+    // or sequential lexing
+    private static List<String> parse(Path file, boolean pipelined) throws IOException {
+        ArrayList<String> messages = new ArrayList<>();
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setErrorHandler((line, column, message) -> messages.add(line + ":" + column + "\t>>>>>> " + message));
+        lexer.fileInput(file);
+        TokenSource tokens = pipelined ? new PipelinedTokenSource(lexer) : new LexerTokenSource(lexer);
+        Parsing parsing = new Parsing(tokens);
+        parsing.parse();
+        if (pipelined) ((PipelinedTokenSource) tokens).close();
+        messages.addAll(parsing.getDiagnostics());
+        return messages;
+    }
+
+    @Test
+    void pipelinedGivesTheMessagesOfSequential() throws IOException {
+        Path file = stopsEarly();
+        List<String> sequential = parse(file, false);
+        assertFalse(sequential.isEmpty());
+        for (int run = 0; run < 5; run++) assertEquals(sequential, parse(file, true));
+    }
+
+    @Test
+    void checkGivesTheSameMessagesTwice() throws IOException {
+        Path file = stopsEarly();
+        Parsing.CheckResult first = Parsing.check(file, Trace.OFF);
+        Parsing.CheckResult second = Parsing.check(file, Trace.OFF);
+        assertFalse(first.passed());
+        assertEquals(first.getMessages(), second.getMessages());
+    }
+
+    @Test
+    void closeLeavesTheLexerItsErrorHandler() throws IOException {
+        ArrayList<String> messages = new ArrayList<>();
+        LexicalAnalyzer lexer = new LexicalAnalyzer();
+        lexer.setErrorHandler((line, column, message) -> messages.add(message));
+        lexer.fileInput(stopsEarly());
+        PipelinedTokenSource tokens = new PipelinedTokenSource(lexer);
+        new Parsing(tokens).parse();
+        tokens.close();
+        int reported = messages.size();
+        lexer.next(); // lexed on this thread now, past the parse
+        while (!lexer.isEndOfText() && messages.size() == reported) lexer.next();
+        assertTrue(messages.size() > reported);
+    }
+}
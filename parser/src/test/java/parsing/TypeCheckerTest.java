@@ -0,0 +1,79 @@
+package parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import parsing.Parsing.Trace;
+
+// The TypeChecker gives each error of the examples, at its position, and lets an inner block hide a
+// name of an outer one
+class TypeCheckerTest {
+    @TempDir
+    Path directory;
+
+    private static List<String> messages(Path file) {
+        return Parsing.check(file, Trace.OFF).getMessages();
+    }
+
+    private static void assertMessages(String example, String... expected) {
+        assertEquals(List.of(expected), messages(Path.of("../examples-correct-syntax", example)), example);
+    }
+
+    @Test
+    void hiding() {
+        assertMessages("hiding.txt");
+    }
+
+    @Test
+    void badScoping() {
+        assertMessages("bad_scoping.txt",
+                "Type error: 'b' is not declared Position: 9:12",
+                "Type error: 'c' is not declared Position: 11:12");
+    }
+
+    @Test
+    void badDeclaration() {
+        assertMessages("bad_decl.txt", "Type error: 'a' is already declared in this block Position: 4:9");
+    }
+
+    @Test
+    void badAssignment() {
+        assertMessages("bad_assignment.txt", "Type error: cannot assign bool to int variable 'a' Position: 4:4");
+    }
+
+    @Test
+    void badExpressions() {
+        assertMessages("bad_exp.txt", "Type error: 'and' needs bool operands, found int and bool Position: 4:11");
+        assertMessages("bad_exp2.txt", "Type error: cannot assign bool to int variable 'a' Position: 5:4");
+        assertMessages("bad_exp3.txt", "Type error: 'not' needs a bool operand, found int Position: 4:9");
+        assertMessages("bad_exp4.txt", "Type error: '+' needs int operands, found int and bool Position: 4:11");
+        assertMessages("bad_exp5.txt", "Type error: 'not' needs a bool operand, found int Position: 4:10");
+        assertMessages("bad_exp6.txt",
+                "Type error: 'not' needs a bool operand, found int Position: 6:10",
+                "Type error: cannot assign int to bool variable 'b' Position: 8:6");
+        assertMessages("bad_exp7.txt", "Type error: cannot assign int to bool variable 'b' Position: 6:6");
+    }
+
+    @Test
+    void shadowing() throws IOException {
+        // Inside the loop a is the bool declared there, after it the int again
+        Path file = directory.resolve("shadow.txt");
+        Files.writeString(file, "program Shadow:\n  int a;\n  a := 1;\n  while a < 3 do\n    bool a;\n    a := true;\n    print a\n  end;\n"
+                + "  a := a + 1\n.\n");
+        assertEquals(List.of(), messages(file));
+
+        // Used the other way round, both are errors
+        Files.writeString(file, "program Shadow:\n  int a;\n  a := 1;\n  if a = 1 then\n    bool a;\n    a := a + 1\n  end;\n"
+                + "  a := true\n.\n");
+        assertEquals(List.of(
+                "Type error: '+' needs int operands, found bool and int Position: 6:12",
+                "Type error: cannot assign bool to int variable 'a' Position: 8:3"), messages(file));
+    }
+}